@@ -0,0 +1,208 @@
+package com.thoughtworks.ddd.hibernate;
+
+import static junit.framework.Assert.*;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thoughtworks.ddd.specification.Attribute;
+import com.thoughtworks.ddd.specification.EqualsSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * Runs {@link HibernateRepository} fetch plans against an in-memory HSQLDB database, counting the statements
+ * prepared to select customers in one region and read all of their orders.
+ */
+public class HibernateRepositoryFetchPlanTest {
+    private static final String MAPPING = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE hibernate-mapping PUBLIC \"-//Hibernate/Hibernate Mapping DTD 3.0//EN\""
+            + " \"http://hibernate.sourceforge.net/hibernate-mapping-3.0.dtd\">\n"
+            + "<hibernate-mapping package=\"com.thoughtworks.ddd.hibernate\">"
+            + "<class name=\"HibernateRepositoryFetchPlanTest$Customer\" table=\"customer\">"
+            + "<id name=\"id\"><generator class=\"increment\"/></id>"
+            + "<property name=\"region\"/>"
+            + "<set name=\"orders\" cascade=\"all\"><key column=\"customer_id\"/>"
+            + "<one-to-many class=\"HibernateRepositoryFetchPlanTest$PurchaseOrder\"/></set>"
+            + "</class>"
+            + "<class name=\"HibernateRepositoryFetchPlanTest$PurchaseOrder\" table=\"purchase_order\">"
+            + "<id name=\"id\"><generator class=\"increment\"/></id>"
+            + "<property name=\"amount\" type=\"integer\"/>"
+            + "</class></hibernate-mapping>";
+
+    private static final int CUSTOMERS = 4;
+    private static final int ORDERS_PER_CUSTOMER = 3;
+
+    private static final Attribute<Customer, String> REGION = new Attribute<Customer, String>() {
+        public String getName() {
+            return "region";
+        }
+
+        public String valueOf(final Customer object) {
+            return object.getRegion();
+        }
+    };
+
+    private SessionFactory factory;
+    private Statistics statistics;
+    private CustomerRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+        properties.setProperty("hibernate.connection.url", "jdbc:hsqldb:mem:fetchplan");
+        properties.setProperty("hibernate.connection.username", "sa");
+        properties.setProperty("hibernate.connection.password", "");
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.setProperty("hibernate.current_session_context_class", "thread");
+        properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        properties.setProperty("hibernate.generate_statistics", "true");
+        factory = new Configuration().setProperties(properties).addXML(MAPPING).buildSessionFactory();
+        statistics = factory.getStatistics();
+        repository = new CustomerRepository(factory);
+
+        final Transaction transaction = factory.getCurrentSession().beginTransaction();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            repository.add(new Customer("EU", ORDERS_PER_CUSTOMER));
+        }
+        repository.add(new Customer("US", ORDERS_PER_CUSTOMER));
+        transaction.commit();
+        statistics.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        factory.close();
+    }
+
+    @Test
+    public void withoutFetchPlanShouldLoadOrdersOneCustomerAtATime() throws Exception {
+        assertEquals(CUSTOMERS * ORDERS_PER_CUSTOMER, countEuropeanOrders(new QueryOptions<Customer>(), false));
+        assertEquals(1 + CUSTOMERS, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void joinFetchShouldLoadOrdersWithCustomers() throws Exception {
+        assertEquals(CUSTOMERS * ORDERS_PER_CUSTOMER, countEuropeanOrders(new QueryOptions<Customer>()
+                .fetch(new FetchPlan().join("orders")), true));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void batchFetchShouldLoadOrdersOneBatchOfCustomersAtATime() throws Exception {
+        assertEquals(CUSTOMERS * ORDERS_PER_CUSTOMER, countEuropeanOrders(new QueryOptions<Customer>()
+                .fetch(new FetchPlan().batch("orders", 3)), true));
+        assertEquals(1 + 2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void subselectFetchShouldLoadOrdersOfAllCustomersInOneQuery() throws Exception {
+        assertEquals(CUSTOMERS * ORDERS_PER_CUSTOMER, countEuropeanOrders(new QueryOptions<Customer>()
+                .fetch(new FetchPlan().subselect("orders")), true));
+        assertEquals(1 + 1, statistics.getPrepareStatementCount());
+    }
+
+    private int countEuropeanOrders(final QueryOptions<Customer> options, final boolean expectInitialized) {
+        final Specification<Customer> european = new EqualsSpecification<Customer, String>(REGION, "EU");
+        final Transaction transaction = factory.getCurrentSession().beginTransaction();
+        try {
+            final Set<Customer> customers = repository.selectSatisfyingWith(european, options);
+            assertEquals(CUSTOMERS, customers.size());
+            int orders = 0;
+            for (final Customer customer : customers) {
+                assertEquals(expectInitialized, Hibernate.isInitialized(customer.getOrders()));
+                orders += customer.getOrders().size();
+            }
+            return orders;
+        } finally {
+            transaction.commit();
+        }
+    }
+
+    public static class Customer {
+        private Long id;
+        private String region;
+        private Set<PurchaseOrder> orders = new HashSet<PurchaseOrder>();
+
+        public Customer() {
+        }
+
+        public Customer(final String region, final int orderCount) {
+            this.region = region;
+            for (int i = 0; i < orderCount; i++) {
+                orders.add(new PurchaseOrder(i));
+            }
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(final Long id) {
+            this.id = id;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(final String region) {
+            this.region = region;
+        }
+
+        public Set<PurchaseOrder> getOrders() {
+            return orders;
+        }
+
+        public void setOrders(final Set<PurchaseOrder> orders) {
+            this.orders = orders;
+        }
+    }
+
+    public static class PurchaseOrder {
+        private Long id;
+        private int amount;
+
+        public PurchaseOrder() {
+        }
+
+        public PurchaseOrder(final int amount) {
+            this.amount = amount;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(final Long id) {
+            this.id = id;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        public void setAmount(final int amount) {
+            this.amount = amount;
+        }
+    }
+
+    private static class CustomerRepository extends HibernateRepository<Customer> {
+
+        public CustomerRepository(final SessionFactory factory) {
+            super(factory);
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.thoughtworks.ddd.hibernate;
+
+import static junit.framework.Assert.*;
+
+import java.util.Properties;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thoughtworks.ddd.specification.Attribute;
+import com.thoughtworks.ddd.specification.EqualsSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * Runs {@link HibernateRepository} query caching against an in-memory HSQLDB database with Hibernate's
+ * HashtableCacheProvider, counting the statements actually prepared.
+ */
+public class HibernateRepositoryQueryCacheTest {
+    private static final String MAPPING = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE hibernate-mapping PUBLIC \"-//Hibernate/Hibernate Mapping DTD 3.0//EN\""
+            + " \"http://hibernate.sourceforge.net/hibernate-mapping-3.0.dtd\">\n"
+            + "<hibernate-mapping package=\"com.thoughtworks.ddd.hibernate\">"
+            + "<class name=\"HibernateRepositoryQueryCacheTest$Account\" table=\"account\">"
+            + "<cache usage=\"read-write\"/>"
+            + "<id name=\"id\"><generator class=\"increment\"/></id>"
+            + "<property name=\"status\"/>"
+            + "</class></hibernate-mapping>";
+
+    private static final Attribute<Account, String> STATUS = new Attribute<Account, String>() {
+        public String getName() {
+            return "status";
+        }
+
+        public String valueOf(final Account object) {
+            return object.getStatus();
+        }
+    };
+
+    private SessionFactory factory;
+    private Statistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+        properties.setProperty("hibernate.connection.url", "jdbc:hsqldb:mem:querycache");
+        properties.setProperty("hibernate.connection.username", "sa");
+        properties.setProperty("hibernate.connection.password", "");
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.setProperty("hibernate.current_session_context_class", "thread");
+        properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        properties.setProperty("hibernate.cache.provider_class", "org.hibernate.cache.HashtableCacheProvider");
+        properties.setProperty("hibernate.cache.use_second_level_cache", "true");
+        properties.setProperty("hibernate.cache.use_query_cache", "true");
+        properties.setProperty("hibernate.generate_statistics", "true");
+        factory = new Configuration().setProperties(properties).addXML(MAPPING).buildSessionFactory();
+        statistics = factory.getStatistics();
+
+        final AccountRepository repository = new AccountRepository(factory, null);
+        final Transaction transaction = factory.getCurrentSession().beginTransaction();
+        repository.add(new Account("OPEN"));
+        repository.add(new Account("OPEN"));
+        repository.add(new Account("CLOSED"));
+        transaction.commit();
+        statistics.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        factory.close();
+    }
+
+    @Test
+    public void repeatedSelectionShouldBeServedFromQueryCacheRegion() throws Exception {
+        final AccountRepository repository = new AccountRepository(factory, "accounts");
+
+        assertEquals(2, countOpen(repository));
+        assertEquals(2, countOpen(repository));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void writeShouldInvalidateCachedSelections() throws Exception {
+        final AccountRepository repository = new AccountRepository(factory, "accounts");
+        assertEquals(2, countOpen(repository));
+
+        final Transaction transaction = factory.getCurrentSession().beginTransaction();
+        repository.add(new Account("OPEN"));
+        transaction.commit();
+        final long statementsBeforeRequery = statistics.getPrepareStatementCount();
+
+        assertEquals(3, countOpen(repository));
+        assertEquals(statementsBeforeRequery + 1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void repeatedSelectionShouldQueryDatabaseWithoutQueryCacheRegion() throws Exception {
+        final AccountRepository repository = new AccountRepository(factory, null);
+
+        countOpen(repository);
+        countOpen(repository);
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getQueryCacheHitCount());
+    }
+
+    private int countOpen(final AccountRepository repository) {
+        final Specification<Account> open = new EqualsSpecification<Account, String>(STATUS, "OPEN");
+        final Transaction transaction = factory.getCurrentSession().beginTransaction();
+        try {
+            return repository.selectSatisfying(open).size();
+        } finally {
+            transaction.commit();
+        }
+    }
+
+    public static class Account {
+        private Long id;
+        private String status;
+
+        public Account() {
+        }
+
+        public Account(final String status) {
+            this.status = status;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(final Long id) {
+            this.id = id;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(final String status) {
+            this.status = status;
+        }
+    }
+
+    private static class AccountRepository extends HibernateRepository<Account> {
+
+        public AccountRepository(final SessionFactory factory, final String queryCacheRegion) {
+            super(factory, queryCacheRegion);
+        }
+
+    }
+
+}
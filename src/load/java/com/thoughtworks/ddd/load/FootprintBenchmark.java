@@ -0,0 +1,69 @@
+package com.thoughtworks.ddd.load;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.thoughtworks.ddd.repository.LongIdentifier;
+import com.thoughtworks.ddd.repository.LongKeyedRepository;
+import com.thoughtworks.ddd.repository.SetBasedRepository;
+
+/**
+ * Reports the heap retained per entity by each way of holding entities, excluding the entities themselves, measured
+ * as the growth in used heap after full collections. Run with <code>-Dload.entities</code> to change the number of
+ * entities, and with a heap large enough to hold them several times over.
+ */
+public class FootprintBenchmark {
+    private static final LongIdentifier<LoadEntity> IDENTIFIER = new LongIdentifier<LoadEntity>() {
+        public long idOf(final LoadEntity entity) {
+            return entity.getId();
+        }
+    };
+
+    public static void main(final String[] args) throws Exception {
+        final int count = Integer.getInteger("load.entities", 1000000);
+        final List<LoadEntity> entities = new ArrayList<LoadEntity>(count);
+        for (long id = 1; id <= count; id++) {
+            entities.add(new LoadEntity(id, 0, 0));
+        }
+
+        long before = usedHeap();
+        final SetBasedRepository<LoadEntity> setBased = new SetBasedRepository<LoadEntity>();
+        setBased.add(entities);
+        report("SetBasedRepository (HashSet)", usedHeap() - before, count);
+
+        before = usedHeap();
+        final Map<Long, LoadEntity> boxed = new HashMap<Long, LoadEntity>();
+        for (final LoadEntity entity : entities) {
+            boxed.put(Long.valueOf(IDENTIFIER.idOf(entity)), entity);
+        }
+        report("HashMap<Long, T>", usedHeap() - before, count);
+
+        before = usedHeap();
+        final LongKeyedRepository<LoadEntity> longKeyed = new LongKeyedRepository<LoadEntity>(IDENTIFIER);
+        longKeyed.add(entities);
+        report("LongKeyedRepository", usedHeap() - before, count);
+
+        if (setBased.selectAll().size() + boxed.size() + longKeyed.size() != 3 * count) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static void report(final String name, final long bytes, final int count) {
+        System.out.println(String.format(Locale.ENGLISH, "%-30s %6.1f bytes/entity", name, (double) bytes / count));
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+}
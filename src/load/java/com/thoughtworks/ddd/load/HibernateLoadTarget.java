@@ -0,0 +1,116 @@
+package com.thoughtworks.ddd.load;
+
+import java.util.Collection;
+import java.util.Properties;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+
+import com.thoughtworks.ddd.hibernate.HibernateRepository;
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * Drives a {@link HibernateRepository} with one session and transaction per operation. Connection settings default
+ * to an in-memory HSQLDB database and can be overridden with any <code>hibernate.*</code> system property.
+ */
+public class HibernateLoadTarget implements LoadTarget {
+    static final String DEFAULT_DRIVER = "org.hsqldb.jdbcDriver";
+
+    private static final int POPULATE_BATCH_SIZE = 500;
+    private static final String MAPPING = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE hibernate-mapping PUBLIC \"-//Hibernate/Hibernate Mapping DTD 3.0//EN\""
+            + " \"http://hibernate.sourceforge.net/hibernate-mapping-3.0.dtd\">\n"
+            + "<hibernate-mapping package=\"com.thoughtworks.ddd.load\">"
+            + "<class name=\"LoadEntity\" table=\"load_entity\">"
+            + "<id name=\"id\"><generator class=\"assigned\"/></id>"
+            + "<property name=\"category\" index=\"load_entity_category\"/>"
+            + "<property name=\"amount\" index=\"load_entity_amount\"/>"
+            + "</class></hibernate-mapping>";
+
+    private final int connections;
+    private SessionFactory factory;
+    private LoadEntityRepository repository;
+
+    public HibernateLoadTarget(final int connections) {
+        this.connections = connections;
+    }
+
+    public String getName() {
+        return "hibernate";
+    }
+
+    public void setUp(final Collection<LoadEntity> entities) {
+        final Properties properties = new Properties();
+        properties.setProperty("hibernate.connection.driver_class", DEFAULT_DRIVER);
+        properties.setProperty("hibernate.connection.url", "jdbc:hsqldb:mem:load");
+        properties.setProperty("hibernate.connection.username", "sa");
+        properties.setProperty("hibernate.connection.password", "");
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.setProperty("hibernate.connection.pool_size", String.valueOf(connections));
+        properties.setProperty("hibernate.current_session_context_class", "thread");
+        properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        properties.setProperty("hibernate.jdbc.batch_size", String.valueOf(POPULATE_BATCH_SIZE));
+        for (final String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("hibernate.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        factory = new Configuration().setProperties(properties).addXML(MAPPING).buildSessionFactory();
+        repository = new LoadEntityRepository(factory);
+
+        final Session session = factory.getCurrentSession();
+        final Transaction transaction = session.beginTransaction();
+        int saved = 0;
+        for (final LoadEntity entity : entities) {
+            session.save(entity);
+            if (++saved % POPULATE_BATCH_SIZE == 0) {
+                session.flush();
+                session.clear();
+            }
+        }
+        transaction.commit();
+    }
+
+    public int read(final Specification<LoadEntity> specification) {
+        final Transaction transaction = factory.getCurrentSession().beginTransaction();
+        try {
+            final int selected = repository.selectSatisfying(specification).size();
+            transaction.commit();
+            return selected;
+        } catch (final RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    public int write(final Specification<LoadEntity> specification, final Assignments<LoadEntity> assignments) {
+        final Transaction transaction = factory.getCurrentSession().beginTransaction();
+        try {
+            final int updated = repository.updateSatisfying(specification, assignments);
+            transaction.commit();
+            return updated;
+        } catch (final RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    public void tearDown() {
+        if (factory != null) {
+            factory.close();
+            factory = null;
+        }
+    }
+
+    private static class LoadEntityRepository extends HibernateRepository<LoadEntity> {
+
+        public LoadEntityRepository(final SessionFactory factory) {
+            super(factory);
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.thoughtworks.ddd.load;
+
+/**
+ * Records latencies in log-linear buckets, after HdrHistogram: each power of two is split into 128 linear
+ * sub-buckets, so any recorded value is reported to within 1% using a fixed 37KB of counts regardless of range.
+ * Recording is not thread-safe; give each thread its own histogram and {@link #add(LatencyHistogram)} them together.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 7;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final long SUB_BUCKET_MASK = (SUB_BUCKET_HALF_COUNT << 1) - 1;
+    private static final long HIGHEST_TRACKABLE_VALUE = 1L << 42;
+
+    private final long[] counts = new long[indexOf(HIGHEST_TRACKABLE_VALUE) + 1];
+    private long totalCount;
+    private long maxValue;
+    private double sum;
+
+    public void record(final long value) {
+        final long clamped = Math.max(0, Math.min(HIGHEST_TRACKABLE_VALUE, value));
+        counts[indexOf(clamped)]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, clamped);
+        sum += clamped;
+    }
+
+    public void add(final LatencyHistogram other) {
+        for (int index = 0; index < counts.length; index++) {
+            counts[index] += other.counts[index];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+        sum += other.sum;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Returns the highest value equivalent to the one at the given percentile, so that reported percentiles never
+     * understate the recorded latency.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+            if (seen >= target) {
+                return Math.min(maxValue, highestEquivalentValue(index));
+            }
+        }
+        return maxValue;
+    }
+
+    private static int indexOf(final long value) {
+        final int bucket = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+        final int subBucket = (int) (value >>> bucket);
+        return ((bucket + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + subBucket - SUB_BUCKET_HALF_COUNT;
+    }
+
+    private static long highestEquivalentValue(final int index) {
+        int bucket = (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        int subBucket = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucket < 0) {
+            subBucket -= SUB_BUCKET_HALF_COUNT;
+            bucket = 0;
+        }
+        return ((long) subBucket << bucket) + (1L << bucket) - 1;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.thoughtworks.ddd.load;
+
+import com.thoughtworks.ddd.specification.Attribute;
+
+final class LoadAttributes {
+
+    static final Attribute<LoadEntity, Long> ID = new Attribute<LoadEntity, Long>() {
+        public String getName() {
+            return "id";
+        }
+
+        public Long valueOf(final LoadEntity object) {
+            return object.getId();
+        }
+    };
+
+    static final Attribute<LoadEntity, Integer> CATEGORY = new Attribute<LoadEntity, Integer>() {
+        public String getName() {
+            return "category";
+        }
+
+        public Integer valueOf(final LoadEntity object) {
+            return object.getCategory();
+        }
+    };
+
+    static final Attribute<LoadEntity, Integer> AMOUNT = new Attribute<LoadEntity, Integer>() {
+        public String getName() {
+            return "amount";
+        }
+
+        public Integer valueOf(final LoadEntity object) {
+            return object.getAmount();
+        }
+    };
+
+    private LoadAttributes() {
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.thoughtworks.ddd.load;
+
+public class LoadEntity {
+    private Long id;
+    private int category;
+    private int amount;
+
+    public LoadEntity() {
+    }
+
+    public LoadEntity(final Long id, final int category, final int amount) {
+        this.id = id;
+        this.category = category;
+        this.amount = amount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(final Long id) {
+        this.id = id;
+    }
+
+    public int getCategory() {
+        return category;
+    }
+
+    public void setCategory(final int category) {
+        this.category = category;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public void setAmount(final int amount) {
+        this.amount = amount;
+    }
+
+}
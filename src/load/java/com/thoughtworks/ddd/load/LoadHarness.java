@@ -0,0 +1,271 @@
+package com.thoughtworks.ddd.load;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.EqualsSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * Runs a closed-loop mixed read/write workload against each target at each thread count and reports throughput
+ * and latency percentiles. Each worker records into its own {@link LatencyHistogram} so measurement adds no
+ * contention of its own. Reads select by a {@link SpecificationMix}; writes update the amount of one entity
+ * chosen by id. The first exception thrown to each worker, during warm-up or measurement, is reported after the
+ * results so that a failing target can be diagnosed. A target that cannot be set up is skipped, and the harness
+ * then exits with a non-zero status once the other targets have run.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li><code>load.targets</code> - any of <code>set</code>, <code>set-indexed</code> and <code>hibernate</code></li>
+ * <li><code>load.threads</code> - comma-separated thread counts</li>
+ * <li><code>load.readRatio</code> - fraction of operations that are reads</li>
+ * <li><code>load.specMix</code> - see {@link SpecificationMix}</li>
+ * <li><code>load.entities</code>, <code>load.categories</code>, <code>load.amounts</code>,
+ * <code>load.rangeWidth</code> - shape of the data set</li>
+ * <li><code>load.warmupSeconds</code>, <code>load.durationSeconds</code>, <code>load.seed</code></li>
+ * </ul>
+ */
+public class LoadHarness {
+    private static final int WARMING_UP = 0;
+    private static final int MEASURING = 1;
+    private static final int STOPPED = 2;
+
+    private final double readRatio;
+    private final SpecificationMix specificationMix;
+    private final int entities;
+    private final int categories;
+    private final int amounts;
+    private final long warmupMillis;
+    private final long durationMillis;
+    private final long seed;
+    private volatile int phase;
+
+    public LoadHarness(final double readRatio, final SpecificationMix specificationMix, final int entities,
+            final int categories, final int amounts, final long warmupMillis, final long durationMillis,
+            final long seed) {
+        if (readRatio < 0 || readRatio > 1) {
+            throw new IllegalArgumentException("read ratio must be between 0 and 1: " + readRatio);
+        }
+        this.readRatio = readRatio;
+        this.specificationMix = specificationMix;
+        this.entities = entities;
+        this.categories = categories;
+        this.amounts = amounts;
+        this.warmupMillis = warmupMillis;
+        this.durationMillis = durationMillis;
+        this.seed = seed;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int entities = Integer.getInteger("load.entities", 100000);
+        final int categories = Integer.getInteger("load.categories", 1000);
+        final int amounts = Integer.getInteger("load.amounts", 100000);
+        final SpecificationMix mix = new SpecificationMix(System.getProperty("load.specMix",
+                "equals:60,range:30,and:10"), categories, amounts, Integer.getInteger("load.rangeWidth", 100));
+        final LoadHarness harness = new LoadHarness(Double.parseDouble(System.getProperty("load.readRatio", "0.9")),
+                mix, entities, categories, amounts, TimeUnit.SECONDS.toMillis(Integer.getInteger(
+                        "load.warmupSeconds", 5)), TimeUnit.SECONDS.toMillis(Integer.getInteger(
+                        "load.durationSeconds", 10)), Long.getLong("load.seed", 42));
+
+        final List<Integer> threadCounts = new ArrayList<Integer>();
+        for (final String threads : System.getProperty("load.threads", "1,4,16,64,256").split(",")) {
+            threadCounts.add(Integer.valueOf(threads.trim()));
+        }
+        final int maxThreads = Collections.max(threadCounts);
+
+        System.out.println(String.format(Locale.ENGLISH, "%d entities, read ratio %s, mix %s", entities, System
+                .getProperty("load.readRatio", "0.9"), System.getProperty("load.specMix",
+                "equals:60,range:30,and:10")));
+        System.out.println(String.format(Locale.ENGLISH, "%-20s %7s %10s %10s %7s  %-30s  %-30s", "target",
+                "threads", "reads/s", "writes/s", "errors", "read p50/p99/p999/max (us)",
+                "write p50/p99/p999/max (us)"));
+        boolean allTargetsRan = true;
+        for (final String name : System.getProperty("load.targets", "set,set-indexed,hibernate").split(",")) {
+            for (final int threads : threadCounts) {
+                final LoadTarget target = createTarget(name.trim(), maxThreads);
+                if (!harness.run(target, threads, System.out)) {
+                    allTargetsRan = false;
+                    break;
+                }
+            }
+        }
+        if (!allTargetsRan) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the workload against the target, printing one line of results. Returns false, after printing why, if the
+     * target could not be set up.
+     */
+    public boolean run(final LoadTarget target, final int threads, final PrintStream out) throws Exception {
+        try {
+            target.setUp(createEntities());
+        } catch (final Exception e) {
+            out.println(String.format(Locale.ENGLISH, "%-20s skipped: %s", target.getName(), e));
+            return false;
+        } catch (final LinkageError e) {
+            out.println(String.format(Locale.ENGLISH, "%-20s skipped: %s", target.getName(), e));
+            return false;
+        }
+        try {
+            final List<Worker> workers = new ArrayList<Worker>();
+            final List<Thread> workerThreads = new ArrayList<Thread>();
+            for (int i = 0; i < threads; i++) {
+                final Worker worker = new Worker(target, new Random(seed + i));
+                final Thread thread = new Thread(worker, "load-" + i);
+                thread.setDaemon(true);
+                workers.add(worker);
+                workerThreads.add(thread);
+            }
+            phase = WARMING_UP;
+            for (final Thread thread : workerThreads) {
+                thread.start();
+            }
+            Thread.sleep(warmupMillis);
+            final long start = System.nanoTime();
+            phase = MEASURING;
+            Thread.sleep(durationMillis);
+            phase = STOPPED;
+            final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            for (final Thread thread : workerThreads) {
+                thread.join();
+            }
+
+            final LatencyHistogram reads = new LatencyHistogram();
+            final LatencyHistogram writes = new LatencyHistogram();
+            long errors = 0;
+            Exception firstError = null;
+            final Map<String, Integer> workersByFirstError = new LinkedHashMap<String, Integer>();
+            for (final Worker worker : workers) {
+                reads.add(worker.reads);
+                writes.add(worker.writes);
+                errors += worker.errors;
+                if (worker.firstError != null) {
+                    if (firstError == null) {
+                        firstError = worker.firstError;
+                    }
+                    final String error = worker.firstError.toString();
+                    final Integer count = workersByFirstError.get(error);
+                    workersByFirstError.put(error, count == null ? 1 : count + 1);
+                }
+            }
+            out.println(String.format(Locale.ENGLISH, "%-20s %7d %10.0f %10.0f %7d  %-30s  %-30s", target.getName(),
+                    threads, reads.getTotalCount() / elapsedSeconds, writes.getTotalCount() / elapsedSeconds, errors,
+                    percentiles(reads), percentiles(writes)));
+            for (final Map.Entry<String, Integer> error : workersByFirstError.entrySet()) {
+                out.println(String.format(Locale.ENGLISH, "  %d worker(s) first failed with %s", error.getValue(),
+                        error.getKey()));
+            }
+            if (firstError != null) {
+                firstError.printStackTrace(out);
+            }
+            return true;
+        } finally {
+            target.tearDown();
+        }
+    }
+
+    private static LoadTarget createTarget(final String name, final int maxThreads) {
+        if ("set".equals(name)) {
+            return new SetBasedLoadTarget(false);
+        }
+        if ("set-indexed".equals(name)) {
+            return new SetBasedLoadTarget(true);
+        }
+        if ("hibernate".equals(name)) {
+            return new HibernateLoadTarget(maxThreads);
+        }
+        throw new IllegalArgumentException("unknown target: " + name);
+    }
+
+    private List<LoadEntity> createEntities() {
+        final Random random = new Random(seed);
+        final List<LoadEntity> created = new ArrayList<LoadEntity>(entities);
+        for (long id = 0; id < entities; id++) {
+            created.add(new LoadEntity(id, random.nextInt(categories), random.nextInt(amounts)));
+        }
+        return created;
+    }
+
+    private static String percentiles(final LatencyHistogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format(Locale.ENGLISH, "%.1f/%.1f/%.1f/%.1f", histogram.getValueAtPercentile(50) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3, histogram
+                        .getMaxValue() / 1e3);
+    }
+
+    private final class Worker implements Runnable {
+        private final LoadTarget target;
+        private final Random random;
+        private final LatencyHistogram reads = new LatencyHistogram();
+        private final LatencyHistogram writes = new LatencyHistogram();
+        private long errors;
+        private Exception firstError;
+
+        private Worker(final LoadTarget target, final Random random) {
+            this.target = target;
+            this.random = random;
+        }
+
+        public void run() {
+            int current;
+            while ((current = phase) != STOPPED) {
+                final boolean read = random.nextDouble() < readRatio;
+                final Specification<LoadEntity> specification = read ? specificationMix.next(random)
+                        : new EqualsSpecification<LoadEntity, Long>(LoadAttributes.ID, (long) random.nextInt(entities));
+                final Assignments<LoadEntity> assignments = read ? null : new AmountAssignment(random
+                        .nextInt(amounts));
+                final long start = System.nanoTime();
+                boolean failed = false;
+                try {
+                    if (read) {
+                        target.read(specification);
+                    } else {
+                        target.write(specification, assignments);
+                    }
+                } catch (final Exception e) {
+                    failed = true;
+                    if (firstError == null) {
+                        firstError = e;
+                    }
+                }
+                final long elapsed = System.nanoTime() - start;
+                if (current == MEASURING) {
+                    if (failed) {
+                        errors++;
+                    } else {
+                        (read ? reads : writes).record(elapsed);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class AmountAssignment implements Assignments<LoadEntity> {
+        private final int amount;
+
+        private AmountAssignment(final int amount) {
+            this.amount = amount;
+        }
+
+        public void applyTo(final LoadEntity object) {
+            object.setAmount(amount);
+        }
+
+        public Map<String, Object> getPropertyValues() {
+            return Collections.<String, Object>singletonMap("amount", amount);
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.thoughtworks.ddd.load;
+
+import java.util.Collection;
+
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * A repository under load. Implementations must be safe to call from many threads at once, in whatever way the
+ * repository would be made safe in production.
+ */
+public interface LoadTarget {
+
+    String getName();
+
+    void setUp(Collection<LoadEntity> entities) throws Exception;
+
+    int read(Specification<LoadEntity> specification) throws Exception;
+
+    int write(Specification<LoadEntity> specification, Assignments<LoadEntity> assignments) throws Exception;
+
+    void tearDown() throws Exception;
+
+}
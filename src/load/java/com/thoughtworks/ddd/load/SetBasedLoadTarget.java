@@ -0,0 +1,59 @@
+package com.thoughtworks.ddd.load;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.thoughtworks.ddd.repository.SetBasedRepository;
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * Drives a {@link SetBasedRepository} guarded by a read-write lock, which is how callers share it between threads,
+ * so lock contention shows up in the measured latencies.
+ */
+public class SetBasedLoadTarget implements LoadTarget {
+    private final boolean indexed;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private SetBasedRepository<LoadEntity> repository;
+
+    public SetBasedLoadTarget(final boolean indexed) {
+        this.indexed = indexed;
+    }
+
+    public String getName() {
+        return indexed ? "set-based (indexed)" : "set-based";
+    }
+
+    public void setUp(final Collection<LoadEntity> entities) {
+        repository = new SetBasedRepository<LoadEntity>(entities);
+        if (indexed) {
+            repository.createIndex(LoadAttributes.ID);
+            repository.createIndex(LoadAttributes.CATEGORY);
+            repository.createIndex(LoadAttributes.AMOUNT);
+        }
+    }
+
+    public int read(final Specification<LoadEntity> specification) {
+        lock.readLock().lock();
+        try {
+            return repository.selectSatisfying(specification).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int write(final Specification<LoadEntity> specification, final Assignments<LoadEntity> assignments) {
+        lock.writeLock().lock();
+        try {
+            return repository.updateSatisfying(specification, assignments);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void tearDown() {
+        repository = null;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.thoughtworks.ddd.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.thoughtworks.ddd.specification.AndSpecification;
+import com.thoughtworks.ddd.specification.EqualsSpecification;
+import com.thoughtworks.ddd.specification.RangeSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * Chooses read specifications at random according to weights given as <code>kind:weight</code> pairs, for example
+ * <code>equals:60,range:30,and:10</code>. Kinds are <code>equals</code> (one category), <code>range</code> (a
+ * window of amounts) and <code>and</code> (both).
+ */
+public class SpecificationMix {
+
+    private enum Kind {
+        EQUALS, RANGE, AND
+    }
+
+    private final int categories;
+    private final int amounts;
+    private final int rangeWidth;
+    private final List<Kind> kinds = new ArrayList<Kind>();
+    private final List<Integer> cumulativeWeights = new ArrayList<Integer>();
+    private int totalWeight;
+
+    public SpecificationMix(final String mix, final int categories, final int amounts, final int rangeWidth) {
+        this.categories = categories;
+        this.amounts = amounts;
+        this.rangeWidth = rangeWidth;
+        for (final String entry : mix.split(",")) {
+            final String[] kindAndWeight = entry.trim().split(":");
+            if (kindAndWeight.length != 2) {
+                throw new IllegalArgumentException("expected kind:weight but was " + entry);
+            }
+            final int weight = Integer.parseInt(kindAndWeight[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight: " + entry);
+            }
+            totalWeight += weight;
+            kinds.add(Kind.valueOf(kindAndWeight[0].trim().toUpperCase()));
+            cumulativeWeights.add(totalWeight);
+        }
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("no specifications in mix: " + mix);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public Specification<LoadEntity> next(final Random random) {
+        final int chosen = random.nextInt(totalWeight);
+        int index = 0;
+        while (cumulativeWeights.get(index) <= chosen) {
+            index++;
+        }
+        switch (kinds.get(index)) {
+        case EQUALS:
+            return category(random);
+        case RANGE:
+            return amountRange(random);
+        default:
+            return new AndSpecification<LoadEntity>(category(random), amountRange(random));
+        }
+    }
+
+    private Specification<LoadEntity> category(final Random random) {
+        return new EqualsSpecification<LoadEntity, Integer>(LoadAttributes.CATEGORY, random.nextInt(categories));
+    }
+
+    private Specification<LoadEntity> amountRange(final Random random) {
+        final int lower = random.nextInt(Math.max(1, amounts - rangeWidth));
+        return new RangeSpecification<LoadEntity, Integer>(LoadAttributes.AMOUNT, lower, true, lower + rangeWidth,
+                false);
+    }
+
+}
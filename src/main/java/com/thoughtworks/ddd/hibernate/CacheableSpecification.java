@@ -0,0 +1,54 @@
+package com.thoughtworks.ddd.hibernate;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.hibernate.Criteria;
+
+import com.thoughtworks.ddd.specification.Specification;
+
+public class CacheableSpecification<T> implements Specification<T> {
+    private final Specification<T> specification;
+    private final String cacheRegion;
+
+    public CacheableSpecification(final Specification<T> specification) {
+        this(specification, null);
+    }
+
+    public CacheableSpecification(final Specification<T> specification, final String cacheRegion) {
+        if (specification == null) {
+            throw new IllegalArgumentException();
+        }
+        this.specification = specification;
+        this.cacheRegion = cacheRegion;
+    }
+
+    public boolean isSatisfiedBy(final T object) {
+        return specification.isSatisfiedBy(object);
+    }
+
+    public void populateCriteria(final Criteria criteria) {
+        specification.populateCriteria(criteria);
+        criteria.setCacheable(true);
+        if (cacheRegion != null) {
+            criteria.setCacheRegion(cacheRegion);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof CacheableSpecification)) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        final CacheableSpecification<?> other = (CacheableSpecification<?>) obj;
+        return specification.equals(other.specification) && ObjectUtils.equals(cacheRegion, other.cacheRegion);
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(specification).append(cacheRegion).toHashCode();
+    }
+
+}
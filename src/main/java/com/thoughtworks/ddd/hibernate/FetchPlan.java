@@ -0,0 +1,82 @@
+package com.thoughtworks.ddd.hibernate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+
+/**
+ * Describes how the associations of selected entities should be loaded. Join paths are fetched by the selecting
+ * query itself; batch and subselect paths are initialized afterwards by one query per batch of roots, or by a single
+ * query re-applying the specification, instead of one query per root.
+ */
+public class FetchPlan {
+    private final Set<String> joinPaths = new LinkedHashSet<String>();
+    private final Map<String, Integer> batchPaths = new LinkedHashMap<String, Integer>();
+    private final Set<String> subselectPaths = new LinkedHashSet<String>();
+    private int fetchSize;
+
+    public FetchPlan join(final String path) {
+        joinPaths.add(validPath(path));
+        return this;
+    }
+
+    public FetchPlan batch(final String path, final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+        batchPaths.put(validPath(path), batchSize);
+        return this;
+    }
+
+    /**
+     * Initializes the path by re-running the specification with the path join fetched. Unlike a SQL subselect,
+     * which reads only the associated rows, this reads one row per root and associated entity, repeating the root
+     * columns in each. The re-query is never served from the query cache, since a cached result would leave the
+     * associations uninitialized.
+     */
+    public FetchPlan subselect(final String path) {
+        subselectPaths.add(validPath(path));
+        return this;
+    }
+
+    public FetchPlan fetchSize(final int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("fetch size must be positive");
+        }
+        fetchSize = rows;
+        return this;
+    }
+
+    public void populateCriteria(final Criteria criteria) {
+        for (final String path : joinPaths) {
+            criteria.setFetchMode(path, FetchMode.JOIN);
+        }
+        if (!joinPaths.isEmpty()) {
+            criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        }
+        if (fetchSize > 0) {
+            criteria.setFetchSize(fetchSize);
+        }
+    }
+
+    Map<String, Integer> getBatchPaths() {
+        return Collections.unmodifiableMap(batchPaths);
+    }
+
+    Set<String> getSubselectPaths() {
+        return Collections.unmodifiableSet(subselectPaths);
+    }
+
+    private static String validPath(final String path) {
+        if (path == null || path.length() == 0) {
+            throw new IllegalArgumentException("fetch path required");
+        }
+        return path;
+    }
+
+}
@@ -1,30 +1,71 @@
 package com.thoughtworks.ddd.hibernate;
 
+import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.HibernateException;
 import org.hibernate.NonUniqueResultException;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 
+import com.thoughtworks.ddd.repository.Deadline;
 import com.thoughtworks.ddd.repository.NonUniqueObjectSelectedException;
 import com.thoughtworks.ddd.repository.NullObjectAddedException;
+import com.thoughtworks.ddd.repository.QueryLimiter;
+import com.thoughtworks.ddd.repository.QueryRejectedException;
+import com.thoughtworks.ddd.repository.QueryTimeoutException;
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.HqlSpecification;
 import com.thoughtworks.ddd.specification.OrderComparator;
 import com.thoughtworks.ddd.specification.Specification;
 
 @SuppressWarnings("unchecked")
 public abstract class HibernateRepository<T> {
+    private static final int DEFAULT_BULK_CHUNK_SIZE = 500;
+    private static final Pattern PROPERTY_PATH = Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*");
+
 	private final SessionFactory factory;
     private final Class<T> persistantClass;
+    private final String queryCacheRegion;
+    private final QueryLimiter queryLimiter;
 
     public HibernateRepository(final SessionFactory factory) {
+        this(factory, null);
+    }
+
+    /**
+     * Creates a repository whose selections and counts are cached in the given query cache region, or not cached
+     * at all if the region is null.
+     */
+    public HibernateRepository(final SessionFactory factory, final String queryCacheRegion) {
+        this(factory, queryCacheRegion, null);
+    }
+
+    /**
+     * Creates a repository whose deadline-bounded queries are also admitted through the given limiter, or not
+     * limited at all if the limiter is null.
+     */
+    public HibernateRepository(final SessionFactory factory, final String queryCacheRegion,
+            final QueryLimiter queryLimiter) {
         this.factory = factory;
+        this.queryCacheRegion = queryCacheRegion;
+        this.queryLimiter = queryLimiter;
         persistantClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
     }
 
@@ -42,32 +83,45 @@ public abstract class HibernateRepository<T> {
     }
 
     public Set<T> selectAll() {
-        return new HashSet<T>(getCurrentSession().createCriteria(persistantClass).list());
+        return new HashSet<T>(createQueryCriteria().list());
     }
 
     public Set<T> selectAll(final OrderComparator<T> comparator) {
-        final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+        final Criteria criteria = createQueryCriteria();
         comparator.populateCriteria(criteria);
         return new LinkedHashSet<T>(criteria.list());
     }
 
     public Set<T> selectSatisfying(final Specification<T> specification) {
-        final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+        final Criteria criteria = createQueryCriteria();
         specification.populateCriteria(criteria);
         final List<T> matchedObjects = criteria.list();
         return new LinkedHashSet<T>(matchedObjects);
     }
 
     public Set<T> selectSatisfying(final Specification<T> specification, final OrderComparator<T> comparator) {
-        final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+        final Criteria criteria = createQueryCriteria();
         specification.populateCriteria(criteria);
         comparator.populateCriteria(criteria);
         final List<T> matchedObjects = criteria.list();
         return new LinkedHashSet<T>(matchedObjects);
     }
 
+    public List<T> listSatisfying(final Specification<T> specification) {
+        final Criteria criteria = createQueryCriteria();
+        specification.populateCriteria(criteria);
+        return criteria.list();
+    }
+
+    public List<T> listSatisfying(final Specification<T> specification, final OrderComparator<T> comparator) {
+        final Criteria criteria = createQueryCriteria();
+        specification.populateCriteria(criteria);
+        comparator.populateCriteria(criteria);
+        return criteria.list();
+    }
+
     public int countSatisfying(final Specification<T> specification) {
-        final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+        final Criteria criteria = createQueryCriteria();
         criteria.setProjection(Projections.rowCount());
         specification.populateCriteria(criteria);
         final List result = criteria.list();
@@ -75,7 +129,7 @@ public abstract class HibernateRepository<T> {
     }
 
     public T selectUnique(final Specification<T> specification) throws NonUniqueObjectSelectedException {
-        final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+        final Criteria criteria = createQueryCriteria();
         specification.populateCriteria(criteria);
         final T matchedObject;
         try {
@@ -86,8 +140,239 @@ public abstract class HibernateRepository<T> {
         return matchedObject;
     }
 
+    /**
+     * Selects the entities satisfying the specification, ordered, fetched and bounded by the given options.
+     */
+    public Set<T> selectSatisfyingWith(final Specification<T> specification, final QueryOptions<T> options)
+            throws QueryTimeoutException, QueryRejectedException {
+        final Criteria criteria = createQueryCriteria();
+        specification.populateCriteria(criteria);
+        options.populateCriteria(criteria);
+        final List<T> matchedObjects = list(criteria, options.getDeadline());
+        fetchDeferredAssociations(specification, options, matchedObjects);
+        return new LinkedHashSet<T>(matchedObjects);
+    }
+
+    public T selectUniqueWith(final Specification<T> specification, final QueryOptions<T> options)
+            throws NonUniqueObjectSelectedException, QueryTimeoutException, QueryRejectedException {
+        final Criteria criteria = createQueryCriteria();
+        specification.populateCriteria(criteria);
+        options.populateCriteria(criteria);
+        final List<T> matchedObjects = list(criteria, options.getDeadline());
+        T matchedObject = null;
+        for (final T object : matchedObjects) {
+            if (matchedObject != null && matchedObject != object) {
+                throw new NonUniqueObjectSelectedException();
+            }
+            matchedObject = object;
+        }
+        if (matchedObject != null) {
+            fetchDeferredAssociations(specification, options, Collections.singletonList(matchedObject));
+        }
+        return matchedObject;
+    }
+
+    /**
+     * Counts the entities satisfying the specification within the options' deadline, if any. Ordering and fetch
+     * plans do not apply to counts and are ignored.
+     */
+    public int countSatisfyingWith(final Specification<T> specification, final QueryOptions<T> options)
+            throws QueryTimeoutException, QueryRejectedException {
+        final Criteria criteria = createQueryCriteria();
+        criteria.setProjection(Projections.rowCount());
+        specification.populateCriteria(criteria);
+        final List<Integer> result = list(criteria, options.getDeadline());
+        return result.get(0);
+    }
+
+    public int deleteSatisfying(final Specification<T> specification) {
+        final String restriction = hqlRestriction(specification);
+        if (restriction != null) {
+            final Query query = getCurrentSession().createQuery(
+                    "delete from " + persistantClass.getName() + " where " + restriction);
+            setParameters(query, ((HqlSpecification<T>) specification).getHqlParameters());
+            return query.executeUpdate();
+        }
+        return executeInIdentifierChunks(specification, "delete from " + persistantClass.getName(), null);
+    }
+
+    public int updateSatisfying(final Specification<T> specification, final Assignments<T> assignments) {
+        final Map<String, Object> propertyValues = assignments.getPropertyValues();
+        if (propertyValues.isEmpty()) {
+            throw new IllegalArgumentException("no properties assigned");
+        }
+        final StringBuilder setClause = new StringBuilder();
+        for (final String property : propertyValues.keySet()) {
+            if (!PROPERTY_PATH.matcher(property).matches()) {
+                throw new IllegalArgumentException("invalid property: " + property);
+            }
+            setClause.append(setClause.length() == 0 ? " set " : ", ");
+            setClause.append(property).append(" = :").append(assignmentParameter(property));
+        }
+        final String update = "update " + persistantClass.getName() + setClause;
+
+        final String restriction = hqlRestriction(specification);
+        if (restriction != null) {
+            final Query query = getCurrentSession().createQuery(update + " where " + restriction);
+            setParameters(query, ((HqlSpecification<T>) specification).getHqlParameters());
+            setAssignmentParameters(query, propertyValues);
+            return query.executeUpdate();
+        }
+        return executeInIdentifierChunks(specification, update, propertyValues);
+    }
+
+    protected int getBulkChunkSize() {
+        return DEFAULT_BULK_CHUNK_SIZE;
+    }
+
     protected Session getCurrentSession() {
         return factory.getCurrentSession();
     }
 
+    private <R> List<R> list(final Criteria criteria, final Deadline deadline) throws QueryTimeoutException,
+            QueryRejectedException {
+        return deadline == null ? criteria.list() : this.<R>listWithin(criteria, deadline);
+    }
+
+    private <R> List<R> listWithin(final Criteria criteria, final Deadline deadline) throws QueryTimeoutException,
+            QueryRejectedException {
+        deadline.check();
+        if (queryLimiter != null) {
+            queryLimiter.acquire(deadline);
+        }
+        try {
+            final long remainingMillis = deadline.remaining(TimeUnit.MILLISECONDS);
+            if (remainingMillis == 0) {
+                throw new QueryTimeoutException();
+            }
+            criteria.setTimeout((int) Math.min(Integer.MAX_VALUE, (remainingMillis + 999) / 1000));
+            return criteria.list();
+        } catch (final HibernateException e) {
+            if (deadline.isExpired()) {
+                throw new QueryTimeoutException(e);
+            }
+            throw e;
+        } finally {
+            if (queryLimiter != null) {
+                queryLimiter.release();
+            }
+        }
+    }
+
+    private String getIdentifierPropertyName() {
+        return factory.getClassMetadata(persistantClass).getIdentifierPropertyName();
+    }
+
+    private Criteria createQueryCriteria() {
+        final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+        if (queryCacheRegion != null) {
+            criteria.setCacheable(true);
+            criteria.setCacheRegion(queryCacheRegion);
+        }
+        return criteria;
+    }
+
+    private void fetchDeferredAssociations(final Specification<T> specification, final QueryOptions<T> options,
+            final List<T> roots) throws QueryTimeoutException, QueryRejectedException {
+        final FetchPlan fetchPlan = options.getFetchPlan();
+        if (fetchPlan == null || roots.isEmpty()) {
+            return;
+        }
+        final Deadline deadline = options.getDeadline();
+        for (final String path : fetchPlan.getSubselectPaths()) {
+            final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+            specification.populateCriteria(criteria);
+            criteria.setCacheable(false);
+            criteria.setFetchMode(path, FetchMode.JOIN);
+            criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+            list(criteria, deadline);
+        }
+        if (fetchPlan.getBatchPaths().isEmpty()) {
+            return;
+        }
+        final String identifierProperty = getIdentifierPropertyName();
+        final List<Serializable> ids = new ArrayList<Serializable>(roots.size());
+        for (final T root : roots) {
+            ids.add(getCurrentSession().getIdentifier(root));
+        }
+        for (final Map.Entry<String, Integer> batchPath : fetchPlan.getBatchPaths().entrySet()) {
+            final int batchSize = batchPath.getValue();
+            for (int start = 0; start < ids.size(); start += batchSize) {
+                final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+                criteria.add(Restrictions.in(identifierProperty, ids.subList(start, Math.min(start + batchSize,
+                        ids.size()))));
+                criteria.setFetchMode(batchPath.getKey(), FetchMode.JOIN);
+                criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+                list(criteria, deadline);
+            }
+        }
+    }
+
+    /**
+     * Runs the statement against the entities satisfying the specification, one chunk of identifiers at a time.
+     * Identifiers are paged in ascending order after the last one processed, so no more than one chunk is held in
+     * memory and entities changed by an earlier chunk are not selected again.
+     */
+    private int executeInIdentifierChunks(final Specification<T> specification, final String statement,
+            final Map<String, Object> assignedValues) {
+        final int chunkSize = getBulkChunkSize();
+        final String identifierProperty = getIdentifierPropertyName();
+        int affected = 0;
+        Object lastId = null;
+        List<Object> ids;
+        do {
+            ids = selectIdentifierChunk(specification, identifierProperty, lastId, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            final Query query = getCurrentSession().createQuery(
+                    statement + " where " + identifierProperty + " in (:ids)");
+            query.setParameterList("ids", ids);
+            if (assignedValues != null) {
+                setAssignmentParameters(query, assignedValues);
+            }
+            affected += query.executeUpdate();
+            lastId = ids.get(ids.size() - 1);
+        } while (ids.size() == chunkSize);
+        return affected;
+    }
+
+    private List<Object> selectIdentifierChunk(final Specification<T> specification,
+            final String identifierProperty, final Object afterId, final int chunkSize) {
+        final Criteria criteria = getCurrentSession().createCriteria(persistantClass);
+        specification.populateCriteria(criteria);
+        if (afterId != null) {
+            criteria.add(Restrictions.gt(identifierProperty, afterId));
+        }
+        criteria.setProjection(Projections.id());
+        criteria.addOrder(Order.asc(identifierProperty));
+        criteria.setMaxResults(chunkSize);
+        return criteria.list();
+    }
+
+    private static String hqlRestriction(final Specification<?> specification) {
+        return specification instanceof HqlSpecification ? ((HqlSpecification<?>) specification).getHqlRestriction()
+                : null;
+    }
+
+    private static void setParameters(final Query query, final Map<String, Object> parameters) {
+        for (final Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            if (parameter.getValue() instanceof Collection) {
+                query.setParameterList(parameter.getKey(), (Collection) parameter.getValue());
+            } else {
+                query.setParameter(parameter.getKey(), parameter.getValue());
+            }
+        }
+    }
+
+    private static void setAssignmentParameters(final Query query, final Map<String, Object> propertyValues) {
+        for (final Map.Entry<String, Object> propertyValue : propertyValues.entrySet()) {
+            query.setParameter(assignmentParameter(propertyValue.getKey()), propertyValue.getValue());
+        }
+    }
+
+    private static String assignmentParameter(final String property) {
+        return "assigned_" + property.replace('.', '_');
+    }
+
 }
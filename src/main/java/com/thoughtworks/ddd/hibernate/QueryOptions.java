@@ -0,0 +1,51 @@
+package com.thoughtworks.ddd.hibernate;
+
+import org.hibernate.Criteria;
+
+import com.thoughtworks.ddd.repository.Deadline;
+import com.thoughtworks.ddd.specification.OrderComparator;
+
+/**
+ * Ordering, association fetching and a deadline for a {@link HibernateRepository} query, in any combination. A
+ * deadline bounds the wait for the repository's query limiter and sets a JDBC statement timeout on every statement
+ * the query runs, including fetch plan follow-up queries. Hibernate only accepts timeouts in whole seconds, so the
+ * remaining time is rounded up to the next second.
+ */
+public class QueryOptions<T> {
+    private OrderComparator<T> comparator;
+    private FetchPlan fetchPlan;
+    private Deadline deadline;
+
+    public QueryOptions<T> orderBy(final OrderComparator<T> comparator) {
+        this.comparator = comparator;
+        return this;
+    }
+
+    public QueryOptions<T> fetch(final FetchPlan fetchPlan) {
+        this.fetchPlan = fetchPlan;
+        return this;
+    }
+
+    public QueryOptions<T> within(final Deadline deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    void populateCriteria(final Criteria criteria) {
+        if (comparator != null) {
+            comparator.populateCriteria(criteria);
+        }
+        if (fetchPlan != null) {
+            fetchPlan.populateCriteria(criteria);
+        }
+    }
+
+    FetchPlan getFetchPlan() {
+        return fetchPlan;
+    }
+
+    Deadline getDeadline() {
+        return deadline;
+    }
+
+}
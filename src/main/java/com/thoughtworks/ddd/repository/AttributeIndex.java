@@ -0,0 +1,106 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.thoughtworks.ddd.specification.Attribute;
+
+class AttributeIndex<T> {
+    private final Attribute<T, ?> attribute;
+    private final Map<Object, Set<T>> entries = new HashMap<Object, Set<T>>();
+    private final Histogram histogram = new Histogram();
+    private int size;
+
+    AttributeIndex(final Attribute<T, ?> attribute, final Collection<T> entities) {
+        this.attribute = attribute;
+        for (final T entity : entities) {
+            add(entity);
+        }
+    }
+
+    Attribute<T, ?> getAttribute() {
+        return attribute;
+    }
+
+    void add(final T entity) {
+        final Object value = attribute.valueOf(entity);
+        Set<T> matching = entries.get(value);
+        if (matching == null) {
+            matching = new HashSet<T>();
+            entries.put(value, matching);
+        }
+        if (matching.add(entity)) {
+            size++;
+            final Double numericValue = numericValue(value);
+            if (numericValue != null) {
+                histogram.add(numericValue);
+            }
+        }
+    }
+
+    void remove(final T entity) {
+        final Object value = attribute.valueOf(entity);
+        final Set<T> matching = entries.get(value);
+        if (matching != null && matching.remove(entity)) {
+            size--;
+            if (matching.isEmpty()) {
+                entries.remove(value);
+            }
+            final Double numericValue = numericValue(value);
+            if (numericValue != null) {
+                histogram.remove(numericValue);
+            }
+        }
+    }
+
+    Set<T> lookup(final Object value) {
+        final Set<T> matching = entries.get(value);
+        return matching == null ? Collections.<T>emptySet() : matching;
+    }
+
+    int distinctCount() {
+        return entries.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the estimated fraction of indexed entities whose value lies between the bounds, or a negative number
+     * if the values are not numeric and so have no histogram.
+     */
+    double estimateFractionBetween(final Object lower, final Object upper) {
+        if (histogram.getTotal() == 0 || histogram.getTotal() != size) {
+            return -1;
+        }
+        final Double numericLower = numericValue(lower);
+        final Double numericUpper = numericValue(upper);
+        if ((lower != null && numericLower == null) || (upper != null && numericUpper == null)) {
+            return -1;
+        }
+        return histogram.fractionBetween(numericLower, numericUpper);
+    }
+
+    /**
+     * Returns the value as a double for the histogram, or null if it is not numeric or has no finite double
+     * equivalent, such as NaN or a BigDecimal beyond the range of a double.
+     */
+    private static Double numericValue(final Object value) {
+        final double numericValue;
+        if (value instanceof Number) {
+            numericValue = ((Number) value).doubleValue();
+        } else if (value instanceof Date) {
+            numericValue = ((Date) value).getTime();
+        } else {
+            return null;
+        }
+        return Double.isNaN(numericValue) || Double.isInfinite(numericValue) ? null : numericValue;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.concurrent.TimeUnit;
+
+public final class Deadline {
+    private final long expiresAt;
+
+    public Deadline(final long timeout, final TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        expiresAt = System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    public long remaining(final TimeUnit unit) {
+        return unit.convert(Math.max(0, expiresAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return expiresAt - System.nanoTime() <= 0;
+    }
+
+    public void check() throws QueryTimeoutException {
+        if (isExpired()) {
+            throw new QueryTimeoutException();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.thoughtworks.ddd.repository;
+
+/**
+ * Equi-width histogram over numeric values. The covered range starts at the first two distinct values seen and
+ * doubles, merging adjacent buckets, whenever a value falls outside it, so memory stays fixed however values are
+ * distributed. Only finite values can be added.
+ */
+class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private double origin;
+    private double width;
+
+    void add(final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("not a finite value: " + value);
+        }
+        if (total == 0) {
+            origin = value;
+            width = 0;
+        } else if (width == 0 && value != origin) {
+            final double first = origin;
+            origin = Math.min(first, value);
+            width = Math.abs(value - first) * 2 / BUCKETS;
+            counts[bucketOf(first)] = counts[0];
+            if (bucketOf(first) != 0) {
+                counts[0] = 0;
+            }
+        }
+        if (width > 0) {
+            while (value < origin) {
+                growDownwards();
+            }
+            while (value >= origin + width * BUCKETS) {
+                growUpwards();
+            }
+        }
+        counts[bucketOf(value)]++;
+        total++;
+    }
+
+    void remove(final double value) {
+        final int bucket = bucketOf(value);
+        if (counts[bucket] > 0) {
+            counts[bucket]--;
+            total--;
+        }
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Estimates the fraction of values between the bounds, assuming values are spread uniformly within each bucket.
+     * Null bounds are open.
+     */
+    double fractionBetween(final Double lower, final Double upper) {
+        if (total == 0) {
+            return 0;
+        }
+        if (width == 0) {
+            final boolean inRange = (lower == null || origin >= lower) && (upper == null || origin <= upper);
+            return inRange ? 1 : 0;
+        }
+        final double low = lower == null ? origin : Math.max(lower, origin);
+        final double high = upper == null ? origin + width * BUCKETS : Math.min(upper, origin + width * BUCKETS);
+        if (high < low) {
+            return 0;
+        }
+        if (high == low) {
+            return (double) counts[bucketOf(low)] / total;
+        }
+        double matching = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            final double bucketLow = origin + bucket * width;
+            final double overlap = Math.min(high, bucketLow + width) - Math.max(low, bucketLow);
+            if (overlap > 0) {
+                matching += counts[bucket] * overlap / width;
+            }
+        }
+        return Math.min(1, matching / total);
+    }
+
+    private int bucketOf(final double value) {
+        if (width == 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(BUCKETS - 1, (int) ((value - origin) / width)));
+    }
+
+    private void growUpwards() {
+        for (int bucket = 0; bucket < BUCKETS / 2; bucket++) {
+            counts[bucket] = counts[2 * bucket] + counts[2 * bucket + 1];
+        }
+        for (int bucket = BUCKETS / 2; bucket < BUCKETS; bucket++) {
+            counts[bucket] = 0;
+        }
+        width *= 2;
+    }
+
+    private void growDownwards() {
+        for (int bucket = BUCKETS - 1; bucket >= BUCKETS / 2; bucket--) {
+            final int merged = 2 * (bucket - BUCKETS / 2);
+            counts[bucket] = counts[merged] + counts[merged + 1];
+        }
+        for (int bucket = 0; bucket < BUCKETS / 2; bucket++) {
+            counts[bucket] = 0;
+        }
+        origin -= width * BUCKETS;
+        width *= 2;
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.thoughtworks.ddd.repository;
+
+public interface LongIdentifier<T> {
+
+    long idOf(T entity);
+
+}
@@ -0,0 +1,164 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * A repository of entities identified by a primitive long, held in an open-addressing map so that each entity costs
+ * one key and one reference slot rather than a boxed key and a hash node. Adding an entity replaces any entity
+ * already held with the same id.
+ */
+public class LongKeyedRepository<T> {
+    private final LongIdentifier<T> identifier;
+    private final LongObjectHashMap<T> entities;
+
+    public LongKeyedRepository(final LongIdentifier<T> identifier) {
+        this(identifier, Collections.<T>emptySet());
+    }
+
+    public LongKeyedRepository(final LongIdentifier<T> identifier, final Collection<T> entities) {
+        if (identifier == null) {
+            throw new IllegalArgumentException();
+        }
+        this.identifier = identifier;
+        this.entities = new LongObjectHashMap<T>(entities.size());
+        add(entities);
+    }
+
+    public void add(final T entity) throws NullObjectAddedException {
+        if (entity == null) {
+            throw new NullObjectAddedException();
+        }
+        entities.put(identifier.idOf(entity), entity);
+    }
+
+    public void add(final Collection<T> entities) throws NullObjectAddedException {
+        if (entities == null) {
+            throw new IllegalArgumentException();
+        }
+        for (final T entity : entities) {
+            if (entity == null) {
+                throw new NullObjectAddedException();
+            }
+        }
+        for (final T entity : entities) {
+            this.entities.put(identifier.idOf(entity), entity);
+        }
+    }
+
+    public T get(final long id) {
+        return entities.get(id);
+    }
+
+    public T remove(final long id) {
+        return entities.remove(id);
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public Set<T> selectAll() {
+        return selectSatisfyingIntoCollection(null, new HashSet<T>(capacityFor(entities.size())));
+    }
+
+    public Set<T> selectAll(final Comparator<T> comparator) {
+        final List<T> result = selectSatisfyingIntoCollection(null, new ArrayList<T>(entities.size()));
+        Collections.sort(result, comparator);
+        return new LinkedHashSet<T>(result);
+    }
+
+    public Set<T> selectSatisfying(final Specification<T> specification) {
+        return selectSatisfyingIntoCollection(specification, new HashSet<T>());
+    }
+
+    public Set<T> selectSatisfying(final Specification<T> specification, final Comparator<T> comparator) {
+        final List<T> result = selectSatisfyingIntoCollection(specification, new ArrayList<T>());
+        Collections.sort(result, comparator);
+        return new LinkedHashSet<T>(result);
+    }
+
+    /**
+     * Returns a lazily filtered view of the entities satisfying the specification, evaluated afresh on each
+     * iteration without copying. Iterators fail fast if an entity is added or removed while they are in use.
+     */
+    public Iterable<T> iterateSatisfying(final Specification<T> specification) {
+        return new SatisfyingIterable<T>(specification) {
+            @Override
+            protected Iterator<T> source() {
+                return entities.valueIterator();
+            }
+        };
+    }
+
+    public T selectUnique(final Specification<T> specification) throws NonUniqueObjectSelectedException {
+        T matchedObject = null;
+        for (final Iterator<T> iterator = entities.valueIterator(); iterator.hasNext();) {
+            final T object = iterator.next();
+            if (specification.isSatisfiedBy(object)) {
+                if (matchedObject != null) {
+                    throw new NonUniqueObjectSelectedException();
+                }
+                matchedObject = object;
+            }
+        }
+        return matchedObject;
+    }
+
+    public int deleteSatisfying(final Specification<T> specification) {
+        final List<T> deleted = selectSatisfyingIntoCollection(specification, new ArrayList<T>());
+        for (final T entity : deleted) {
+            entities.remove(identifier.idOf(entity));
+        }
+        return deleted.size();
+    }
+
+    public int updateSatisfying(final Specification<T> specification, final Assignments<T> assignments) {
+        final List<T> updated = selectSatisfyingIntoCollection(specification, new ArrayList<T>());
+        final long[] previousIds = new long[updated.size()];
+        for (int i = 0; i < previousIds.length; i++) {
+            previousIds[i] = identifier.idOf(updated.get(i));
+            assignments.applyTo(updated.get(i));
+        }
+        final List<T> rekeyed = new ArrayList<T>();
+        for (int i = 0; i < previousIds.length; i++) {
+            final T entity = updated.get(i);
+            if (identifier.idOf(entity) != previousIds[i]) {
+                if (entities.get(previousIds[i]) == entity) {
+                    entities.remove(previousIds[i]);
+                }
+                rekeyed.add(entity);
+            }
+        }
+        for (final T entity : rekeyed) {
+            entities.put(identifier.idOf(entity), entity);
+        }
+        return updated.size();
+    }
+
+    private <C extends Collection<T>> C selectSatisfyingIntoCollection(final Specification<T> specification,
+            final C target) {
+        for (final Iterator<T> iterator = entities.valueIterator(); iterator.hasNext();) {
+            final T object = iterator.next();
+            if (specification == null || specification.isSatisfiedBy(object)) {
+                target.add(object);
+            }
+        }
+        return target;
+    }
+
+    private static int capacityFor(final int size) {
+        return Math.max(16, (int) (size / .75f) + 1);
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open-addressing map from primitive long keys to values, using linear probing over parallel key and value arrays.
+ * Zero marks an empty slot, so a mapping for key zero is held outside the arrays. Value iterators fail fast if a
+ * key is added or removed while they are in use.
+ */
+class LongObjectHashMap<V> {
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean hasZeroKey;
+    private V zeroKeyValue;
+    private int modCount;
+
+    LongObjectHashMap() {
+        this(MINIMUM_CAPACITY);
+    }
+
+    LongObjectHashMap(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(final long key) {
+        if (key == 0) {
+            return zeroKeyValue;
+        }
+        for (int slot = slotOf(key);; slot = (slot + 1) & mask) {
+            final long candidate = keys[slot];
+            if (candidate == key) {
+                return (V) values[slot];
+            }
+            if (candidate == 0) {
+                return null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(final long key, final V value) {
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+        if (key == 0) {
+            final V previous = zeroKeyValue;
+            zeroKeyValue = value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+                modCount++;
+            }
+            return previous;
+        }
+        int slot = slotOf(key);
+        for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                final V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        modCount++;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(final long key) {
+        if (key == 0) {
+            final V previous = zeroKeyValue;
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroKeyValue = null;
+                size--;
+                modCount++;
+            }
+            return previous;
+        }
+        for (int slot = slotOf(key);; slot = (slot + 1) & mask) {
+            final long candidate = keys[slot];
+            if (candidate == 0) {
+                return null;
+            }
+            if (candidate == key) {
+                final V previous = (V) values[slot];
+                closeGap(slot);
+                size--;
+                modCount++;
+                return previous;
+            }
+        }
+    }
+
+    Iterator<V> valueIterator() {
+        return new Iterator<V>() {
+            private final int expectedModCount = modCount;
+            private int slot = hasZeroKey ? -1 : nextOccupied(0);
+
+            public boolean hasNext() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                return slot < keys.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final V value = slot < 0 ? zeroKeyValue : (V) values[slot];
+                slot = nextOccupied(slot + 1);
+                return value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int nextOccupied(final int from) {
+        int slot = from;
+        while (slot < keys.length && keys[slot] == 0) {
+            slot++;
+        }
+        return slot;
+    }
+
+    private void closeGap(final int removedSlot) {
+        int gap = removedSlot;
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            final int home = slotOf(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slotOf(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotOf(final long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+}
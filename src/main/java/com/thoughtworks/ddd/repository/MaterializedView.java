@@ -0,0 +1,192 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.thoughtworks.ddd.specification.Specification;
+
+public class MaterializedView<T> {
+    private final Specification<T> specification;
+    private final Comparator<T> comparator;
+    private final Set<T> members;
+    private final List<T> orderedMembers;
+    private final Set<T> results;
+    private final List<MaterializedViewListener<T>> listeners;
+
+    MaterializedView(final Specification<T> specification, final Comparator<T> comparator,
+            final Collection<T> entities) {
+        this.specification = specification;
+        this.comparator = comparator;
+        members = new HashSet<T>();
+        for (final T entity : entities) {
+            if (specification.isSatisfiedBy(entity)) {
+                members.add(entity);
+            }
+        }
+        if (comparator == null) {
+            orderedMembers = null;
+            results = Collections.unmodifiableSet(members);
+        } else {
+            orderedMembers = new ArrayList<T>(members);
+            Collections.sort(orderedMembers, comparator);
+            results = new OrderedResults();
+        }
+        listeners = new CopyOnWriteArrayList<MaterializedViewListener<T>>();
+    }
+
+    public Specification<T> getSpecification() {
+        return specification;
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the matching entities, kept current as the owning repository changes.
+     * Like the repository, it is not thread-safe: read it on the thread that updates the repository, or copy it
+     * under the same lock that guards the repository before handing it to another thread.
+     */
+    public Set<T> getResults() {
+        return results;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public void addListener(final MaterializedViewListener<T> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException();
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(final MaterializedViewListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    void entitiesAdded(final Collection<T> entities) {
+        final List<T> added = new ArrayList<T>();
+        for (final T entity : entities) {
+            if (specification.isSatisfiedBy(entity) && members.add(entity)) {
+                if (orderedMembers != null) {
+                    orderedMembers.add(insertionPoint(entity), entity);
+                }
+                added.add(entity);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        final Collection<T> delta = Collections.unmodifiableList(added);
+        for (final MaterializedViewListener<T> listener : listeners) {
+            listener.entitiesAdded(this, delta);
+        }
+    }
+
+    void entitiesRemoved(final Collection<T> entities) {
+        final Set<T> removed = new HashSet<T>();
+        for (final T entity : entities) {
+            if (members.remove(entity)) {
+                removed.add(entity);
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        if (orderedMembers != null) {
+            orderedMembers.removeAll(removed);
+        }
+        final Collection<T> delta = Collections.unmodifiableSet(removed);
+        for (final MaterializedViewListener<T> listener : listeners) {
+            listener.entitiesRemoved(this, delta);
+        }
+    }
+
+    /**
+     * Detaches the members among entities about to be updated, before their state and hash codes change, and
+     * returns them for {@link #entitiesUpdated}. Listeners are not notified.
+     */
+    Set<T> entitiesUpdating(final Collection<T> entities) {
+        final Set<T> detached = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        for (final T entity : entities) {
+            if (members.remove(entity)) {
+                detached.add(entity);
+            }
+        }
+        if (orderedMembers != null && !detached.isEmpty()) {
+            orderedMembers.removeAll(detached);
+        }
+        return detached;
+    }
+
+    /**
+     * Re-evaluates updated entities still held by the repository and notifies listeners of the net change only:
+     * detached members that no longer qualify are removed, and entities that newly qualify are added.
+     */
+    void entitiesUpdated(final Set<T> detached, final Collection<T> entities) {
+        final List<T> added = new ArrayList<T>();
+        for (final T entity : entities) {
+            if (specification.isSatisfiedBy(entity) && members.add(entity)) {
+                if (orderedMembers != null) {
+                    orderedMembers.add(insertionPoint(entity), entity);
+                }
+                if (!detached.remove(entity)) {
+                    added.add(entity);
+                }
+            }
+        }
+        if (!detached.isEmpty()) {
+            final Collection<T> delta = Collections.unmodifiableList(new ArrayList<T>(detached));
+            for (final MaterializedViewListener<T> listener : listeners) {
+                listener.entitiesRemoved(this, delta);
+            }
+        }
+        if (!added.isEmpty()) {
+            final Collection<T> delta = Collections.unmodifiableList(added);
+            for (final MaterializedViewListener<T> listener : listeners) {
+                listener.entitiesAdded(this, delta);
+            }
+        }
+    }
+
+    private int insertionPoint(final T entity) {
+        int low = 0;
+        int high = orderedMembers.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (comparator.compare(orderedMembers.get(middle), entity) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private final class OrderedResults extends AbstractSet<T> {
+
+        @Override
+        public Iterator<T> iterator() {
+            return Collections.unmodifiableList(orderedMembers).iterator();
+        }
+
+        @Override
+        public int size() {
+            return members.size();
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return members.contains(object);
+        }
+
+    }
+
+}
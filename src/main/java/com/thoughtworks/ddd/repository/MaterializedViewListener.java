@@ -0,0 +1,11 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.Collection;
+
+public interface MaterializedViewListener<T> {
+
+    void entitiesAdded(MaterializedView<T> view, Collection<T> entities);
+
+    void entitiesRemoved(MaterializedView<T> view, Collection<T> entities);
+
+}
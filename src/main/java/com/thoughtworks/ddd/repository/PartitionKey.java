@@ -0,0 +1,7 @@
+package com.thoughtworks.ddd.repository;
+
+public interface PartitionKey<T, K> {
+
+    K keyOf(T entity);
+
+}
@@ -0,0 +1,13 @@
+package com.thoughtworks.ddd.repository;
+
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * A specification that is only satisfied by entities with the given partition key, allowing a
+ * {@link PartitionedRepository} to evaluate it against a single partition.
+ */
+public interface PartitionKeySpecification<T, K> extends Specification<T> {
+
+    K getPartitionKey();
+
+}
@@ -0,0 +1,298 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.thoughtworks.ddd.specification.AndSpecification;
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.Specification;
+
+@SuppressWarnings("unchecked")
+public class PartitionedRepository<T, K> {
+    private static final int NOT_PINNED = -1;
+
+    private final PartitionKey<T, K> partitionKey;
+    private final List<SetBasedRepository<T>> partitions;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a repository that scans its partitions one after another on the calling thread. Use the constructor
+     * taking an executor to scan for unpinned selections in parallel.
+     */
+    public PartitionedRepository(final int partitionCount, final PartitionKey<T, K> partitionKey) {
+        this(partitionCount, partitionKey, null);
+    }
+
+    /**
+     * Creates a repository that scans the partitions for unpinned selections in parallel on the given executor, or
+     * sequentially on the calling thread if the executor is null.
+     */
+    public PartitionedRepository(final int partitionCount, final PartitionKey<T, K> partitionKey,
+            final ExecutorService executor) {
+        if (partitionCount < 1 || partitionKey == null) {
+            throw new IllegalArgumentException();
+        }
+        this.partitionKey = partitionKey;
+        this.executor = executor;
+        partitions = new ArrayList<SetBasedRepository<T>>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new SetBasedRepository<T>());
+        }
+    }
+
+    public void add(final T entity) throws NullObjectAddedException {
+        if (entity == null) {
+            throw new NullObjectAddedException();
+        }
+        partitionFor(entity).add(entity);
+    }
+
+    public void add(final Collection<T> entities) throws NullObjectAddedException {
+        if (entities == null) {
+            throw new IllegalArgumentException();
+        }
+        final List<List<T>> routed = new ArrayList<List<T>>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            routed.add(new ArrayList<T>());
+        }
+        for (final T entity : entities) {
+            if (entity == null) {
+                throw new NullObjectAddedException();
+            }
+            routed.get(partitionIndex(partitionKey.keyOf(entity))).add(entity);
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!routed.get(i).isEmpty()) {
+                partitions.get(i).add(routed.get(i));
+            }
+        }
+    }
+
+    public Set<T> selectAll() {
+        final Set<T> result = new HashSet<T>();
+        for (final SetBasedRepository<T> partition : partitions) {
+            result.addAll(partition.selectAll());
+        }
+        return result;
+    }
+
+    public Set<T> selectAll(final Comparator<T> comparator) {
+        final List<Set<T>> sortedPartitions = new ArrayList<Set<T>>(partitions.size());
+        for (final SetBasedRepository<T> partition : partitions) {
+            sortedPartitions.add(partition.selectAll(comparator));
+        }
+        return merge(sortedPartitions, comparator);
+    }
+
+    public Set<T> selectSatisfying(final Specification<T> specification) {
+        final int pinned = pinnedPartition(specification);
+        if (pinned != NOT_PINNED) {
+            return partitions.get(pinned).selectSatisfying(specification);
+        }
+        final Set<T> result = new HashSet<T>();
+        for (final Set<T> partitionResult : fanOut(new PartitionQuery<T, Set<T>>() {
+            public Set<T> execute(final SetBasedRepository<T> partition) {
+                return partition.selectSatisfying(specification);
+            }
+        })) {
+            result.addAll(partitionResult);
+        }
+        return result;
+    }
+
+    public Set<T> selectSatisfying(final Specification<T> specification, final Comparator<T> comparator) {
+        final int pinned = pinnedPartition(specification);
+        if (pinned != NOT_PINNED) {
+            return partitions.get(pinned).selectSatisfying(specification, comparator);
+        }
+        return merge(fanOut(new PartitionQuery<T, Set<T>>() {
+            public Set<T> execute(final SetBasedRepository<T> partition) {
+                return partition.selectSatisfying(specification, comparator);
+            }
+        }), comparator);
+    }
+
+    public T selectUnique(final Specification<T> specification) throws NonUniqueObjectSelectedException {
+        final int pinned = pinnedPartition(specification);
+        if (pinned != NOT_PINNED) {
+            return partitions.get(pinned).selectUnique(specification);
+        }
+        T matchedObject = null;
+        for (final Set<T> partitionResult : fanOut(new PartitionQuery<T, Set<T>>() {
+            public Set<T> execute(final SetBasedRepository<T> partition) {
+                return partition.selectSatisfying(specification);
+            }
+        })) {
+            for (final T object : partitionResult) {
+                if (matchedObject != null) {
+                    throw new NonUniqueObjectSelectedException();
+                }
+                matchedObject = object;
+            }
+        }
+        return matchedObject;
+    }
+
+    public int deleteSatisfying(final Specification<T> specification) {
+        final int pinned = pinnedPartition(specification);
+        if (pinned != NOT_PINNED) {
+            return partitions.get(pinned).deleteSatisfying(specification);
+        }
+        int deleted = 0;
+        for (final SetBasedRepository<T> partition : partitions) {
+            deleted += partition.deleteSatisfying(specification);
+        }
+        return deleted;
+    }
+
+    public int updateSatisfying(final Specification<T> specification, final Assignments<T> assignments) {
+        final int pinned = pinnedPartition(specification);
+        final List<T> updated = new ArrayList<T>();
+        if (pinned != NOT_PINNED) {
+            updated.addAll(partitions.get(pinned).extractSatisfying(specification));
+        } else {
+            for (final SetBasedRepository<T> partition : partitions) {
+                updated.addAll(partition.extractSatisfying(specification));
+            }
+        }
+        for (final T entity : updated) {
+            assignments.applyTo(entity);
+            partitionFor(entity).add(entity);
+        }
+        return updated.size();
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    private SetBasedRepository<T> partitionFor(final T entity) {
+        return partitions.get(partitionIndex(partitionKey.keyOf(entity)));
+    }
+
+    private int partitionIndex(final K key) {
+        if (key == null) {
+            return 0;
+        }
+        final int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % partitions.size();
+    }
+
+    private int pinnedPartition(final Specification<T> specification) {
+        if (specification instanceof PartitionKeySpecification) {
+            return partitionIndex(((PartitionKeySpecification<T, K>) specification).getPartitionKey());
+        }
+        if (specification instanceof AndSpecification) {
+            for (final Specification<T> subSpecification : ((AndSpecification<T>) specification)
+                    .getSubSpecifications()) {
+                final int pinned = pinnedPartition(subSpecification);
+                if (pinned != NOT_PINNED) {
+                    return pinned;
+                }
+            }
+        }
+        return NOT_PINNED;
+    }
+
+    private <R> List<R> fanOut(final PartitionQuery<T, R> query) {
+        final List<R> results = new ArrayList<R>(partitions.size());
+        if (executor == null) {
+            for (final SetBasedRepository<T> partition : partitions) {
+                results.add(query.execute(partition));
+            }
+            return results;
+        }
+        final List<Callable<R>> tasks = new ArrayList<Callable<R>>(partitions.size());
+        for (final SetBasedRepository<T> partition : partitions) {
+            tasks.add(new Callable<R>() {
+                public R call() {
+                    return query.execute(partition);
+                }
+            });
+        }
+        try {
+            for (final Future<R> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private static <T> Set<T> merge(final List<Set<T>> sortedSets, final Comparator<T> comparator) {
+        final PriorityQueue<MergeCursor<T>> queue = new PriorityQueue<MergeCursor<T>>(Math.max(1, sortedSets
+                .size()), new Comparator<MergeCursor<T>>() {
+            public int compare(final MergeCursor<T> c1, final MergeCursor<T> c2) {
+                final int result = comparator.compare(c1.head, c2.head);
+                return result != 0 ? result : c1.source - c2.source;
+            }
+        });
+        int size = 0;
+        for (int i = 0; i < sortedSets.size(); i++) {
+            final Set<T> sortedSet = sortedSets.get(i);
+            size += sortedSet.size();
+            final Iterator<T> iterator = sortedSet.iterator();
+            if (iterator.hasNext()) {
+                queue.add(new MergeCursor<T>(i, iterator));
+            }
+        }
+        if (queue.size() == 1) {
+            return sortedSets.get(queue.peek().source);
+        }
+        final Set<T> result = new LinkedHashSet<T>(Math.max(16, (int) (size / .75f) + 1));
+        while (!queue.isEmpty()) {
+            final MergeCursor<T> cursor = queue.poll();
+            result.add(cursor.head);
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private interface PartitionQuery<T, R> {
+        R execute(SetBasedRepository<T> partition);
+    }
+
+    private static final class MergeCursor<T> {
+        private final int source;
+        private final Iterator<T> iterator;
+        private T head;
+
+        private MergeCursor(final int source, final Iterator<T> iterator) {
+            this.source = source;
+            this.iterator = iterator;
+            head = iterator.next();
+        }
+
+        private boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of queries executing concurrently. Queries that cannot start immediately wait until their
+ * deadline, unless the number already waiting has reached the queue limit, in which case they are rejected at once.
+ */
+public class QueryLimiter {
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public QueryLimiter(final int maxConcurrent, final int maxQueued) {
+        if (maxConcurrent < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException();
+        }
+        permits = new Semaphore(maxConcurrent, true);
+        this.maxQueued = maxQueued;
+    }
+
+    public void acquire(final Deadline deadline) throws QueryRejectedException, QueryTimeoutException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new QueryRejectedException();
+        }
+        try {
+            if (!permits.tryAcquire(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)) {
+                throw new QueryTimeoutException();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryRejectedException(e);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getQueueLength() {
+        return queued.get();
+    }
+
+}
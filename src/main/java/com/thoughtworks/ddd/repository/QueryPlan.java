@@ -0,0 +1,136 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * The access path chosen by a {@link SetBasedRepository} for a specification, with the estimates that led to it.
+ * Plans returned by {@link SetBasedRepository#explain(Specification)} also record the number of rows actually
+ * selected.
+ */
+public class QueryPlan<T> {
+
+    public enum AccessPath {
+        FULL_SCAN, INDEX, INDEX_INTERSECTION
+    }
+
+    enum EstimateSource {
+        DEFAULT, HISTOGRAM, INDEX
+    }
+
+    private final AccessPath accessPath;
+    private final List<String> indexedAttributes;
+    private final double estimatedRows;
+    private final double estimatedCost;
+    private final List<PredicateEstimate> predicateEstimates;
+    private final Collection<T> candidates;
+    private final List<Set<T>> probes;
+    private final List<Specification<T>> residuals;
+    private int actualRows = -1;
+
+    QueryPlan(final AccessPath accessPath, final List<String> indexedAttributes, final double estimatedRows,
+            final double estimatedCost, final List<PredicateEstimate> predicateEstimates,
+            final Collection<T> candidates, final List<Set<T>> probes, final List<Specification<T>> residuals) {
+        this.accessPath = accessPath;
+        this.indexedAttributes = Collections.unmodifiableList(indexedAttributes);
+        this.estimatedRows = estimatedRows;
+        this.estimatedCost = estimatedCost;
+        this.predicateEstimates = Collections.unmodifiableList(predicateEstimates);
+        this.candidates = candidates;
+        this.probes = probes;
+        this.residuals = residuals;
+    }
+
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    public List<String> getIndexedAttributes() {
+        return indexedAttributes;
+    }
+
+    public double getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public double getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    public int getActualRows() {
+        return actualRows;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder explanation = new StringBuilder();
+        explanation.append(accessPath);
+        if (!indexedAttributes.isEmpty()) {
+            explanation.append(" using ").append(indexedAttributes);
+        }
+        explanation.append(String.format(Locale.ENGLISH, ": estimated %.1f rows", estimatedRows));
+        if (actualRows >= 0) {
+            explanation.append(", actual ").append(actualRows).append(" rows");
+        }
+        explanation.append(String.format(Locale.ENGLISH, ", cost %.1f", estimatedCost));
+        for (final PredicateEstimate predicateEstimate : predicateEstimates) {
+            explanation.append("\n  ").append(predicateEstimate);
+        }
+        return explanation.toString();
+    }
+
+    Collection<T> getCandidates() {
+        return candidates;
+    }
+
+    boolean accepts(final T object) {
+        for (final Set<T> probe : probes) {
+            if (!probe.contains(object)) {
+                return false;
+            }
+        }
+        for (final Specification<T> residual : residuals) {
+            if (!residual.isSatisfiedBy(object)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void setActualRows(final int actualRows) {
+        this.actualRows = actualRows;
+    }
+
+    /**
+     * The estimate for one conjunct of the planned specification, kept unformatted so that planning a query costs
+     * nothing unless the plan is explained.
+     */
+    static final class PredicateEstimate {
+        private final Specification<?> specification;
+        private final double estimatedRows;
+        private final EstimateSource source;
+        private final int distinctValues;
+
+        PredicateEstimate(final Specification<?> specification, final double estimatedRows,
+                final EstimateSource source, final int distinctValues) {
+            this.specification = specification;
+            this.estimatedRows = estimatedRows;
+            this.source = source;
+            this.distinctValues = distinctValues;
+        }
+
+        @Override
+        public String toString() {
+            final String description = source == EstimateSource.INDEX ? "index, " + distinctValues
+                    + " distinct values" : source.name().toLowerCase(Locale.ENGLISH);
+            return String.format(Locale.ENGLISH, "%s: estimated %.1f rows (%s)", specification, estimatedRows,
+                    description);
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.thoughtworks.ddd.specification.AndSpecification;
+import com.thoughtworks.ddd.specification.Attribute;
+import com.thoughtworks.ddd.specification.EqualsSpecification;
+import com.thoughtworks.ddd.specification.RangeSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+/**
+ * Chooses between a full scan, a single index lookup and an intersection of index lookups for a specification,
+ * using the statistics kept by each {@link AttributeIndex}. Conjuncts are assumed to be independent. Indexes are
+ * tried most selective first, but residual predicates are evaluated in the order declared, so that a conjunct may
+ * guard those after it; an index lookup evaluates no predicate and so cannot break such a guard.
+ */
+class QueryPlanner<T> {
+    private static final double SCAN_ROW_COST = 1.0;
+    private static final double INDEX_ROW_COST = 1.2;
+    private static final double PROBE_COST = 0.3;
+    private static final double PREDICATE_COST = 1.0;
+
+    private static final double DEFAULT_EQUALITY_SELECTIVITY = 0.1;
+    private static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+    private static final double DEFAULT_SELECTIVITY = 0.5;
+
+    private static final Comparator<Conjunct<?>> BY_SELECTIVITY = new Comparator<Conjunct<?>>() {
+        public int compare(final Conjunct<?> c1, final Conjunct<?> c2) {
+            return Double.compare(c1.selectivity, c2.selectivity);
+        }
+    };
+
+    private final Map<Attribute<T, ?>, AttributeIndex<T>> indexes;
+
+    QueryPlanner(final Map<Attribute<T, ?>, AttributeIndex<T>> indexes) {
+        this.indexes = indexes;
+    }
+
+    QueryPlan<T> plan(final Specification<T> specification, final Collection<T> entities) {
+        final int total = entities.size();
+        final List<Conjunct<T>> conjuncts = new ArrayList<Conjunct<T>>();
+        for (final Specification<T> conjunct : flatten(specification, new ArrayList<Specification<T>>())) {
+            conjuncts.add(estimate(conjunct, total));
+        }
+        final List<QueryPlan.PredicateEstimate> predicateEstimates = new ArrayList<QueryPlan.PredicateEstimate>(
+                conjuncts.size());
+        for (final Conjunct<T> conjunct : conjuncts) {
+            predicateEstimates.add(new QueryPlan.PredicateEstimate(conjunct.specification, total
+                    * conjunct.selectivity, conjunct.source, conjunct.distinctValues));
+        }
+
+        final List<Conjunct<T>> indexable = new ArrayList<Conjunct<T>>();
+        for (final Conjunct<T> conjunct : conjuncts) {
+            if (conjunct.lookup != null) {
+                indexable.add(conjunct);
+            }
+        }
+        Collections.sort(indexable, BY_SELECTIVITY);
+
+        final double estimatedRows = total * product(conjuncts);
+        double bestCost = total * SCAN_ROW_COST + residualCost(total, conjuncts);
+        int bestIndexCount = 0;
+        if (!indexable.isEmpty()) {
+            final Conjunct<T> first = indexable.get(0);
+            final double lookupRows = first.lookup.size();
+            double probeCost = 0;
+            double probeSelectivity = 1;
+            for (int indexCount = 1; indexCount <= indexable.size(); indexCount++) {
+                if (indexCount > 1) {
+                    probeCost += lookupRows * probeSelectivity * PROBE_COST;
+                    probeSelectivity *= indexable.get(indexCount - 1).selectivity;
+                }
+                final List<Conjunct<T>> remaining = new ArrayList<Conjunct<T>>(conjuncts);
+                remaining.removeAll(indexable.subList(0, indexCount));
+                final double cost = lookupRows * INDEX_ROW_COST + probeCost
+                        + residualCost(lookupRows * probeSelectivity, remaining);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestIndexCount = indexCount;
+                }
+            }
+        }
+
+        final List<Conjunct<T>> chosen = indexable.subList(0, bestIndexCount);
+        final List<String> indexedAttributes = new ArrayList<String>();
+        final List<Set<T>> probes = new ArrayList<Set<T>>();
+        for (final Conjunct<T> conjunct : chosen) {
+            indexedAttributes.add(conjunct.attributeName);
+            if (conjunct != chosen.get(0)) {
+                probes.add(conjunct.lookup);
+            }
+        }
+        final List<Specification<T>> residuals = new ArrayList<Specification<T>>();
+        for (final Conjunct<T> conjunct : conjuncts) {
+            if (!chosen.contains(conjunct)) {
+                residuals.add(conjunct.specification);
+            }
+        }
+        final QueryPlan.AccessPath accessPath = bestIndexCount == 0 ? QueryPlan.AccessPath.FULL_SCAN
+                : bestIndexCount == 1 ? QueryPlan.AccessPath.INDEX : QueryPlan.AccessPath.INDEX_INTERSECTION;
+        final Collection<T> candidates = bestIndexCount == 0 ? entities : chosen.get(0).lookup;
+        return new QueryPlan<T>(accessPath, indexedAttributes, estimatedRows, bestCost, predicateEstimates,
+                candidates, probes, residuals);
+    }
+
+    private Conjunct<T> estimate(final Specification<T> specification, final int total) {
+        if (specification instanceof EqualsSpecification) {
+            final EqualsSpecification<T, ?> equals = (EqualsSpecification<T, ?>) specification;
+            final AttributeIndex<T> index = indexes.get(equals.getAttribute());
+            if (index != null) {
+                final Set<T> lookup = index.lookup(equals.getValue());
+                return new Conjunct<T>(specification, selectivity(lookup.size(), total), lookup, equals
+                        .getAttribute().getName(), QueryPlan.EstimateSource.INDEX, index.distinctCount());
+            }
+            return new Conjunct<T>(specification, DEFAULT_EQUALITY_SELECTIVITY, null, null,
+                    QueryPlan.EstimateSource.DEFAULT, -1);
+        }
+        if (specification instanceof RangeSpecification) {
+            final RangeSpecification<T, ?> range = (RangeSpecification<T, ?>) specification;
+            final AttributeIndex<T> index = indexes.get(range.getAttribute());
+            if (index != null) {
+                final double fraction = index.estimateFractionBetween(range.getLower(), range.getUpper());
+                if (fraction >= 0) {
+                    return new Conjunct<T>(specification, fraction, null, null, QueryPlan.EstimateSource.HISTOGRAM,
+                            -1);
+                }
+            }
+            return new Conjunct<T>(specification, DEFAULT_RANGE_SELECTIVITY, null, null,
+                    QueryPlan.EstimateSource.DEFAULT, -1);
+        }
+        return new Conjunct<T>(specification, DEFAULT_SELECTIVITY, null, null, QueryPlan.EstimateSource.DEFAULT, -1);
+    }
+
+    private List<Specification<T>> flatten(final Specification<T> specification,
+            final List<Specification<T>> conjuncts) {
+        if (specification instanceof AndSpecification) {
+            for (final Specification<T> subSpecification : ((AndSpecification<T>) specification)
+                    .getSubSpecifications()) {
+                flatten(subSpecification, conjuncts);
+            }
+        } else {
+            conjuncts.add(specification);
+        }
+        return conjuncts;
+    }
+
+    private static double selectivity(final int rows, final int total) {
+        return total == 0 ? 0 : (double) rows / total;
+    }
+
+    private static <T> double residualCost(final double rows, final List<Conjunct<T>> residuals) {
+        double cost = 0;
+        double surviving = rows;
+        for (final Conjunct<T> residual : residuals) {
+            cost += surviving * PREDICATE_COST;
+            surviving *= residual.selectivity;
+        }
+        return cost;
+    }
+
+    private static <T> double product(final List<Conjunct<T>> conjuncts) {
+        double product = 1;
+        for (final Conjunct<T> conjunct : conjuncts) {
+            product *= conjunct.selectivity;
+        }
+        return product;
+    }
+
+    private static final class Conjunct<T> {
+        private final Specification<T> specification;
+        private final double selectivity;
+        private final Set<T> lookup;
+        private final String attributeName;
+        private final QueryPlan.EstimateSource source;
+        private final int distinctValues;
+
+        private Conjunct(final Specification<T> specification, final double selectivity, final Set<T> lookup,
+                final String attributeName, final QueryPlan.EstimateSource source, final int distinctValues) {
+            this.specification = specification;
+            this.selectivity = selectivity;
+            this.lookup = lookup;
+            this.attributeName = attributeName;
+            this.source = source;
+            this.distinctValues = distinctValues;
+        }
+    }
+
+}
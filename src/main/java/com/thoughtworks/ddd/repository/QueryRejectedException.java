@@ -0,0 +1,13 @@
+package com.thoughtworks.ddd.repository;
+
+@SuppressWarnings("serial")
+public class QueryRejectedException extends RuntimeException {
+
+    public QueryRejectedException() {
+    }
+
+    public QueryRejectedException(final Exception cause) {
+        super(cause);
+    }
+
+}
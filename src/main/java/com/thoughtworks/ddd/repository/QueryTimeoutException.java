@@ -0,0 +1,13 @@
+package com.thoughtworks.ddd.repository;
+
+@SuppressWarnings("serial")
+public class QueryTimeoutException extends RuntimeException {
+
+    public QueryTimeoutException() {
+    }
+
+    public QueryTimeoutException(final Exception cause) {
+        super(cause);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.thoughtworks.ddd.repository;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.thoughtworks.ddd.specification.Specification;
+
+abstract class SatisfyingIterable<T> implements Iterable<T> {
+    private final Specification<T> specification;
+
+    SatisfyingIterable(final Specification<T> specification) {
+        if (specification == null) {
+            throw new IllegalArgumentException();
+        }
+        this.specification = specification;
+    }
+
+    protected abstract Iterator<T> source();
+
+    public Iterator<T> iterator() {
+        final Iterator<T> source = source();
+        return new Iterator<T>() {
+            private T next;
+
+            public boolean hasNext() {
+                while (next == null && source.hasNext()) {
+                    final T candidate = source.next();
+                    if (specification.isSatisfiedBy(candidate)) {
+                        next = candidate;
+                    }
+                }
+                return next != null;
+            }
+
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final T result = next;
+                next = null;
+                return result;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
@@ -5,28 +5,55 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.Attribute;
 import com.thoughtworks.ddd.specification.Specification;
 
 public class SetBasedRepository<T> {
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
     private final Set<T> objectSet;
+    private final List<MaterializedView<T>> views = new CopyOnWriteArrayList<MaterializedView<T>>();
+    private final QueryLimiter queryLimiter;
+    private final Map<Attribute<T, ?>, AttributeIndex<T>> indexes =
+            new LinkedHashMap<Attribute<T, ?>, AttributeIndex<T>>();
+    private final QueryPlanner<T> planner = new QueryPlanner<T>(indexes);
 
     public SetBasedRepository() {
-        objectSet = new HashSet<T>();
+        this(Collections.<T>emptySet(), null);
     }
     
     public SetBasedRepository(final Collection<T> entities) {
+        this(entities, null);
+    }
+
+    /**
+     * Creates a repository whose deadline-bounded queries are admitted through the given limiter, or not limited at
+     * all if the limiter is null.
+     */
+    public SetBasedRepository(final Collection<T> entities, final QueryLimiter queryLimiter) {
         objectSet = new HashSet<T>(entities);
+        this.queryLimiter = queryLimiter;
     }
 
     public void add(final T entity) throws NullObjectAddedException {
         if (entity == null) {
             throw new NullObjectAddedException();
         }
-        objectSet.add(entity);
+        if (objectSet.add(entity)) {
+            index(entity);
+            if (!views.isEmpty()) {
+                notifyViewsOfAddition(Collections.singleton(entity));
+            }
+        }
     }
     
     public void add(final Collection<T> entities) throws NullObjectAddedException {
@@ -38,7 +65,20 @@ public class SetBasedRepository<T> {
     			throw new NullObjectAddedException();
     		}
     	}
-    	objectSet.addAll(entities);
+    	if (views.isEmpty() && indexes.isEmpty()) {
+    		objectSet.addAll(entities);
+    		return;
+    	}
+    	final List<T> added = new ArrayList<T>();
+    	for (final T entity: entities) {
+    		if (objectSet.add(entity)) {
+    			index(entity);
+    			added.add(entity);
+    		}
+    	}
+    	if (!added.isEmpty() && !views.isEmpty()) {
+    		notifyViewsOfAddition(added);
+    	}
     }
     
     public Set<T> selectAll() {
@@ -61,8 +101,200 @@ public class SetBasedRepository<T> {
         return new LinkedHashSet<T>(result);
     }
 
+    /**
+     * Returns a lazily filtered view of the entities satisfying the specification, evaluated afresh on each
+     * iteration without copying. Iterators fail fast if the repository is modified while they are in use.
+     */
+    public Iterable<T> iterateSatisfying(final Specification<T> specification) {
+        return new SatisfyingIterable<T>(specification) {
+            @Override
+            protected Iterator<T> source() {
+                return objectSet.iterator();
+            }
+        };
+    }
+
     public T selectUnique(final Specification<T> specification) throws NonUniqueObjectSelectedException {
-        final List<T> results = selectSatisfyingIntoCollection(specification, new ArrayList<T>());
+        return uniqueResult(selectSatisfyingIntoCollection(specification, new ArrayList<T>()));
+    }
+
+    /**
+     * Selects the entities satisfying the specification, abandoning the scan with a {@link QueryTimeoutException}
+     * once the deadline passes.
+     */
+    public Set<T> selectSatisfyingWith(final Specification<T> specification, final Deadline deadline)
+            throws QueryTimeoutException, QueryRejectedException {
+        admit(deadline);
+        try {
+            return selectSatisfyingIntoCollection(specification, new HashSet<T>(), deadline);
+        } finally {
+            release();
+        }
+    }
+
+    public Set<T> selectSatisfyingWith(final Specification<T> specification, final Comparator<T> comparator,
+            final Deadline deadline) throws QueryTimeoutException, QueryRejectedException {
+        admit(deadline);
+        try {
+            final List<T> result = selectSatisfyingIntoCollection(specification, new ArrayList<T>(), deadline);
+            deadline.check();
+            Collections.sort(result, comparator);
+            return new LinkedHashSet<T>(result);
+        } finally {
+            release();
+        }
+    }
+
+    public T selectUniqueWith(final Specification<T> specification, final Deadline deadline)
+            throws NonUniqueObjectSelectedException, QueryTimeoutException, QueryRejectedException {
+        admit(deadline);
+        try {
+            return uniqueResult(selectSatisfyingIntoCollection(specification, new ArrayList<T>(), deadline));
+        } finally {
+            release();
+        }
+    }
+
+    public int deleteSatisfying(final Specification<T> specification) {
+        return extractSatisfying(specification).size();
+    }
+
+    /**
+     * Applies the assignments to the entities satisfying the specification and returns how many remain held. An
+     * entity made equal to one already held is dropped. Views are told only of entities that enter or leave them.
+     */
+    public int updateSatisfying(final Specification<T> specification, final Assignments<T> assignments) {
+        final List<T> updated = removeSatisfying(specification);
+        if (updated.isEmpty()) {
+            return 0;
+        }
+        final Map<MaterializedView<T>, Set<T>> detached = new LinkedHashMap<MaterializedView<T>, Set<T>>();
+        for (final MaterializedView<T> view : views) {
+            detached.put(view, view.entitiesUpdating(updated));
+        }
+        for (final T entity : updated) {
+            assignments.applyTo(entity);
+        }
+        final List<T> reinserted = new ArrayList<T>(updated.size());
+        for (final T entity : updated) {
+            if (objectSet.add(entity)) {
+                index(entity);
+                reinserted.add(entity);
+            }
+        }
+        for (final Map.Entry<MaterializedView<T>, Set<T>> view : detached.entrySet()) {
+            view.getKey().entitiesUpdated(view.getValue(), reinserted);
+        }
+        return reinserted.size();
+    }
+
+    public void createIndex(final Attribute<T, ?> attribute) {
+        if (attribute == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!indexes.containsKey(attribute)) {
+            indexes.put(attribute, new AttributeIndex<T>(attribute, objectSet));
+        }
+    }
+
+    public void dropIndex(final Attribute<T, ?> attribute) {
+        indexes.remove(attribute);
+    }
+
+    /**
+     * Plans and runs the specification, returning the chosen plan with its estimated and actual row counts.
+     */
+    public QueryPlan<T> explain(final Specification<T> specification) {
+        final QueryPlan<T> plan = planner.plan(specification, objectSet);
+        int actualRows = 0;
+        for (final T object : plan.getCandidates()) {
+            if (plan.accepts(object)) {
+                actualRows++;
+            }
+        }
+        plan.setActualRows(actualRows);
+        return plan;
+    }
+
+    public MaterializedView<T> createView(final Specification<T> specification) {
+        return createView(specification, null);
+    }
+
+    public MaterializedView<T> createView(final Specification<T> specification, final Comparator<T> comparator) {
+        if (specification == null) {
+            throw new IllegalArgumentException();
+        }
+        final MaterializedView<T> view = new MaterializedView<T>(specification, comparator, objectSet);
+        views.add(view);
+        return view;
+    }
+
+    public void dropView(final MaterializedView<T> view) {
+        views.remove(view);
+    }
+
+    List<T> extractSatisfying(final Specification<T> specification) {
+        final List<T> extracted = removeSatisfying(specification);
+        if (!extracted.isEmpty()) {
+            notifyViewsOfRemoval(extracted);
+        }
+        return extracted;
+    }
+
+    private void notifyViewsOfAddition(final Collection<T> added) {
+        for (final MaterializedView<T> view : views) {
+            view.entitiesAdded(added);
+        }
+    }
+
+    private void notifyViewsOfRemoval(final Collection<T> removed) {
+        for (final MaterializedView<T> view : views) {
+            view.entitiesRemoved(removed);
+        }
+    }
+
+    private void index(final T entity) {
+        for (final AttributeIndex<T> index : indexes.values()) {
+            index.add(entity);
+        }
+    }
+
+    private List<T> removeSatisfying(final Specification<T> specification) {
+        if (!indexes.isEmpty()) {
+            final List<T> removed = selectSatisfyingIntoCollection(specification, new ArrayList<T>());
+            for (final T object : removed) {
+                objectSet.remove(object);
+                for (final AttributeIndex<T> index : indexes.values()) {
+                    index.remove(object);
+                }
+            }
+            return removed;
+        }
+        final List<T> removed = new ArrayList<T>();
+        for (final Iterator<T> iterator = objectSet.iterator(); iterator.hasNext();) {
+            final T object = iterator.next();
+            if (specification.isSatisfiedBy(object)) {
+                iterator.remove();
+                removed.add(object);
+            }
+        }
+        return removed;
+    }
+
+    private void admit(final Deadline deadline) {
+        deadline.check();
+        if (queryLimiter != null) {
+            queryLimiter.acquire(deadline);
+        }
+    }
+
+    private void release() {
+        if (queryLimiter != null) {
+            queryLimiter.release();
+        }
+    }
+
+    private T uniqueResult(final List<T> results) throws NonUniqueObjectSelectedException {
         if (results.size() == 1) {
             return results.get(0);
         } else if (!results.isEmpty()) {
@@ -73,7 +305,42 @@ public class SetBasedRepository<T> {
 
     private <C extends Collection<T>> C selectSatisfyingIntoCollection(final Specification<T> specification,
             final C target) {
+        if (!indexes.isEmpty()) {
+            final QueryPlan<T> plan = planner.plan(specification, objectSet);
+            for (final T object : plan.getCandidates()) {
+                if (plan.accepts(object)) {
+                    target.add(object);
+                }
+            }
+            return target;
+        }
+        for (T object : objectSet) {
+            if (specification.isSatisfiedBy(object)) {
+                target.add(object);
+            }
+        }
+        return target;
+    }
+
+    private <C extends Collection<T>> C selectSatisfyingIntoCollection(final Specification<T> specification,
+            final C target, final Deadline deadline) throws QueryTimeoutException {
+        int scanned = 0;
+        if (!indexes.isEmpty()) {
+            final QueryPlan<T> plan = planner.plan(specification, objectSet);
+            for (final T object : plan.getCandidates()) {
+                if (++scanned % DEADLINE_CHECK_INTERVAL == 0) {
+                    deadline.check();
+                }
+                if (plan.accepts(object)) {
+                    target.add(object);
+                }
+            }
+            return target;
+        }
         for (T object : objectSet) {
+            if (++scanned % DEADLINE_CHECK_INTERVAL == 0) {
+                deadline.check();
+            }
             if (specification.isSatisfiedBy(object)) {
                 target.add(object);
             }
@@ -3,13 +3,20 @@ package com.thoughtworks.ddd.specification;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.hibernate.Criteria;
 
-public class AndSpecification<T> implements Specification<T> {
+public class AndSpecification<T> implements HqlSpecification<T> {
+    private static final Pattern PARAMETER = Pattern.compile(":([A-Za-z_$][\\w$]*)");
+
     private final List<Specification<T>> subSpecifications;
 
     public <S extends Specification<T>> AndSpecification(final Collection<S> specifications) {
@@ -20,6 +27,10 @@ public class AndSpecification<T> implements Specification<T> {
         subSpecifications = Arrays.asList(specifications);
     }
 
+    public List<Specification<T>> getSubSpecifications() {
+        return Collections.unmodifiableList(subSpecifications);
+    }
+
     public boolean isSatisfiedBy(final T object) {
         for (final Specification<T> specification : subSpecifications) {
             if (!specification.isSatisfiedBy(object)) {
@@ -35,6 +46,64 @@ public class AndSpecification<T> implements Specification<T> {
         }
     }
 
+    /**
+     * Returns the conjunction of the sub-specifications' restrictions, or null unless every sub-specification can be
+     * expressed in HQL. The parameters of the sub-specification at index i are suffixed with "_i" to keep them
+     * distinct.
+     */
+    public String getHqlRestriction() {
+        if (subSpecifications.isEmpty()) {
+            return "1 = 1";
+        }
+        final StringBuilder restriction = new StringBuilder();
+        for (int i = 0; i < subSpecifications.size(); i++) {
+            final Specification<T> specification = subSpecifications.get(i);
+            if (!(specification instanceof HqlSpecification)) {
+                return null;
+            }
+            final HqlSpecification<T> hqlSpecification = (HqlSpecification<T>) specification;
+            final String subRestriction = hqlSpecification.getHqlRestriction();
+            if (subRestriction == null) {
+                return null;
+            }
+            if (i > 0) {
+                restriction.append(" and ");
+            }
+            restriction.append('(');
+            final Matcher parameter = PARAMETER.matcher(subRestriction);
+            final Map<String, Object> subParameters = hqlSpecification.getHqlParameters();
+            int end = 0;
+            while (parameter.find()) {
+                restriction.append(subRestriction, end, parameter.end());
+                if (subParameters.containsKey(parameter.group(1))) {
+                    restriction.append('_').append(i);
+                }
+                end = parameter.end();
+            }
+            restriction.append(subRestriction, end, subRestriction.length()).append(')');
+        }
+        return restriction.toString();
+    }
+
+    /**
+     * Returns the sub-specifications' parameters, renamed as in {@link #getHqlRestriction()}, or no parameters
+     * unless every sub-specification can be expressed in HQL.
+     */
+    public Map<String, Object> getHqlParameters() {
+        final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < subSpecifications.size(); i++) {
+            final Specification<T> specification = subSpecifications.get(i);
+            if (!(specification instanceof HqlSpecification)) {
+                return Collections.emptyMap();
+            }
+            for (final Map.Entry<String, Object> parameter : ((HqlSpecification<T>) specification)
+                    .getHqlParameters().entrySet()) {
+                parameters.put(parameter.getKey() + "_" + i, parameter.getValue());
+            }
+        }
+        return parameters;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public boolean equals(final Object obj) {
@@ -0,0 +1,11 @@
+package com.thoughtworks.ddd.specification;
+
+import java.util.Map;
+
+public interface Assignments<T> {
+
+    void applyTo(T object);
+
+    Map<String, Object> getPropertyValues();
+
+}
@@ -0,0 +1,9 @@
+package com.thoughtworks.ddd.specification;
+
+public interface Attribute<T, V> {
+
+    String getName();
+
+    V valueOf(T object);
+
+}
@@ -0,0 +1,80 @@
+package com.thoughtworks.ddd.specification;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Restrictions;
+
+public class EqualsSpecification<T, V> implements HqlSpecification<T> {
+    private final Attribute<T, V> attribute;
+    private final V value;
+
+    public EqualsSpecification(final Attribute<T, V> attribute, final V value) {
+        if (attribute == null) {
+            throw new IllegalArgumentException();
+        }
+        this.attribute = attribute;
+        this.value = value;
+    }
+
+    public Attribute<T, V> getAttribute() {
+        return attribute;
+    }
+
+    public V getValue() {
+        return value;
+    }
+
+    public boolean isSatisfiedBy(final T object) {
+        return ObjectUtils.equals(value, attribute.valueOf(object));
+    }
+
+    public void populateCriteria(final Criteria criteria) {
+        if (value == null) {
+            criteria.add(Restrictions.isNull(attribute.getName()));
+        } else {
+            criteria.add(Restrictions.eq(attribute.getName(), value));
+        }
+    }
+
+    public String getHqlRestriction() {
+        return value == null ? attribute.getName() + " is null" : attribute.getName() + " = :" + parameterName();
+    }
+
+    public Map<String, Object> getHqlParameters() {
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.<String, Object>singletonMap(parameterName(), value);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof EqualsSpecification)) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        final EqualsSpecification<?, ?> other = (EqualsSpecification<?, ?>) obj;
+        return attribute.equals(other.attribute) && ObjectUtils.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(attribute).append(value).toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return attribute.getName() + " = " + value;
+    }
+
+    private String parameterName() {
+        return attribute.getName().replace('.', '_');
+    }
+
+}
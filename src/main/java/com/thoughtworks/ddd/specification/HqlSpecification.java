@@ -0,0 +1,17 @@
+package com.thoughtworks.ddd.specification;
+
+import java.util.Map;
+
+/**
+ * A specification that can also be expressed as an HQL restriction on the properties of the root entity, allowing
+ * it to drive bulk DML statements. Parameters are referenced by name in the restriction. A specification that can
+ * only sometimes be expressed in HQL, such as a conjunction, returns a null restriction when it cannot, and is then
+ * evaluated through criteria instead.
+ */
+public interface HqlSpecification<T> extends Specification<T> {
+
+    String getHqlRestriction();
+
+    Map<String, Object> getHqlParameters();
+
+}
@@ -0,0 +1,134 @@
+package com.thoughtworks.ddd.specification;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Restrictions;
+
+/**
+ * Satisfied by objects whose attribute lies between the given bounds. A null bound leaves that side of the range
+ * open, and objects with a null attribute value never satisfy the specification.
+ */
+public class RangeSpecification<T, V extends Comparable<? super V>> implements HqlSpecification<T> {
+    private final Attribute<T, V> attribute;
+    private final V lower;
+    private final boolean lowerInclusive;
+    private final V upper;
+    private final boolean upperInclusive;
+
+    public RangeSpecification(final Attribute<T, V> attribute, final V lower, final boolean lowerInclusive,
+            final V upper, final boolean upperInclusive) {
+        if (attribute == null || (lower == null && upper == null)) {
+            throw new IllegalArgumentException();
+        }
+        this.attribute = attribute;
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+    }
+
+    public Attribute<T, V> getAttribute() {
+        return attribute;
+    }
+
+    public V getLower() {
+        return lower;
+    }
+
+    public V getUpper() {
+        return upper;
+    }
+
+    public boolean isSatisfiedBy(final T object) {
+        final V value = attribute.valueOf(object);
+        if (value == null) {
+            return false;
+        }
+        if (lower != null) {
+            final int comparison = value.compareTo(lower);
+            if (comparison < 0 || (comparison == 0 && !lowerInclusive)) {
+                return false;
+            }
+        }
+        if (upper != null) {
+            final int comparison = value.compareTo(upper);
+            if (comparison > 0 || (comparison == 0 && !upperInclusive)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void populateCriteria(final Criteria criteria) {
+        if (lower != null) {
+            criteria.add(lowerInclusive ? Restrictions.ge(attribute.getName(), lower) : Restrictions.gt(attribute
+                    .getName(), lower));
+        }
+        if (upper != null) {
+            criteria.add(upperInclusive ? Restrictions.le(attribute.getName(), upper) : Restrictions.lt(attribute
+                    .getName(), upper));
+        }
+    }
+
+    public String getHqlRestriction() {
+        final StringBuilder restriction = new StringBuilder();
+        if (lower != null) {
+            restriction.append(attribute.getName()).append(lowerInclusive ? " >= :" : " > :").append(
+                    parameterName("lower"));
+        }
+        if (upper != null) {
+            if (lower != null) {
+                restriction.append(" and ");
+            }
+            restriction.append(attribute.getName()).append(upperInclusive ? " <= :" : " < :").append(
+                    parameterName("upper"));
+        }
+        return restriction.toString();
+    }
+
+    public Map<String, Object> getHqlParameters() {
+        final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+        if (lower != null) {
+            parameters.put(parameterName("lower"), lower);
+        }
+        if (upper != null) {
+            parameters.put(parameterName("upper"), upper);
+        }
+        return parameters;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof RangeSpecification)) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        final RangeSpecification<?, ?> other = (RangeSpecification<?, ?>) obj;
+        return attribute.equals(other.attribute) && ObjectUtils.equals(lower, other.lower)
+                && lowerInclusive == other.lowerInclusive && ObjectUtils.equals(upper, other.upper)
+                && upperInclusive == other.upperInclusive;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(attribute).append(lower).append(lowerInclusive).append(upper).append(
+                upperInclusive).toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return attribute.getName() + " in " + (lower == null ? "(-inf" : (lowerInclusive ? "[" : "(") + lower)
+                + ", " + (upper == null ? "+inf)" : upper + (upperInclusive ? "]" : ")"));
+    }
+
+    private String parameterName(final String bound) {
+        return attribute.getName().replace('.', '_') + "_" + bound;
+    }
+
+}
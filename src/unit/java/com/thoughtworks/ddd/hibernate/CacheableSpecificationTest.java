@@ -0,0 +1,48 @@
+package com.thoughtworks.ddd.hibernate;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.hibernate.Criteria;
+import org.junit.Test;
+
+import com.thoughtworks.ddd.specification.Specification;
+
+@SuppressWarnings("unchecked")
+public class CacheableSpecificationTest {
+
+    @Test
+    public void isSatisfiedByShouldDelegateToWrappedSpecification() throws Exception {
+        final Object object = new Object();
+        final Specification<Object> mockSpecification = mock(Specification.class);
+        when(mockSpecification.isSatisfiedBy(same(object))).thenReturn(true);
+
+        assertTrue(new CacheableSpecification<Object>(mockSpecification).isSatisfiedBy(object));
+    }
+
+    @Test
+    public void populateCriteriaShouldMarkCriteriaCacheableInDefaultRegion() throws Exception {
+        final Specification<Object> mockSpecification = mock(Specification.class);
+        final Criteria mockCriteria = mock(Criteria.class);
+
+        new CacheableSpecification<Object>(mockSpecification).populateCriteria(mockCriteria);
+
+        verify(mockSpecification).populateCriteria(same(mockCriteria));
+        verify(mockCriteria).setCacheable(true);
+        verify(mockCriteria, never()).setCacheRegion(anyString());
+    }
+
+    @Test
+    public void shouldBeEqualWhenWrappedSpecificationAndRegionAreEqual() throws Exception {
+        final Specification<Object> mockSpecification = mock(Specification.class);
+
+        assertEquals(new CacheableSpecification<Object>(mockSpecification, "region"),
+                new CacheableSpecification<Object>(mockSpecification, "region"));
+        assertEquals(new CacheableSpecification<Object>(mockSpecification, "region").hashCode(),
+                new CacheableSpecification<Object>(mockSpecification, "region").hashCode());
+        assertFalse(new CacheableSpecification<Object>(mockSpecification, "region").equals(
+                new CacheableSpecification<Object>(mockSpecification)));
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.thoughtworks.ddd.hibernate;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.transform.ResultTransformer;
+import org.junit.Test;
+
+public class FetchPlanTest {
+
+    @Test
+    public void populateCriteriaShouldJoinFetchPathsAndDeduplicateRoots() throws Exception {
+        final Criteria mockCriteria = mock(Criteria.class);
+
+        new FetchPlan().join("lines").join("customer").populateCriteria(mockCriteria);
+
+        verify(mockCriteria).setFetchMode("lines", FetchMode.JOIN);
+        verify(mockCriteria).setFetchMode("customer", FetchMode.JOIN);
+        verify(mockCriteria).setResultTransformer(same(Criteria.DISTINCT_ROOT_ENTITY));
+    }
+
+    @Test
+    public void populateCriteriaShouldLeaveBatchAndSubselectPathsToLaterQueries() throws Exception {
+        final Criteria mockCriteria = mock(Criteria.class);
+
+        new FetchPlan().batch("lines", 50).subselect("notes").populateCriteria(mockCriteria);
+
+        verify(mockCriteria, never()).setFetchMode(anyString(), any(FetchMode.class));
+        verify(mockCriteria, never()).setResultTransformer(any(ResultTransformer.class));
+    }
+
+    @Test
+    public void populateCriteriaShouldSetFetchSize() throws Exception {
+        final Criteria mockCriteria = mock(Criteria.class);
+
+        new FetchPlan().fetchSize(200).populateCriteria(mockCriteria);
+
+        verify(mockCriteria).setFetchSize(200);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveBatchSize() throws Exception {
+        new FetchPlan().batch("lines", 0);
+    }
+
+}
@@ -5,23 +5,41 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.JDBCException;
 import org.hibernate.NonUniqueResultException;
+import org.hibernate.Query;
 import org.hibernate.SessionFactory;
 import org.hibernate.classic.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.IdentifierProjection;
 import org.hibernate.criterion.RowCountProjection;
+import org.hibernate.metadata.ClassMetadata;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.thoughtworks.ddd.hibernate.HibernateRepository;
+import com.thoughtworks.ddd.repository.Deadline;
 import com.thoughtworks.ddd.repository.NonUniqueObjectSelectedException;
 import com.thoughtworks.ddd.repository.NullObjectAddedException;
+import com.thoughtworks.ddd.repository.QueryLimiter;
+import com.thoughtworks.ddd.repository.QueryRejectedException;
+import com.thoughtworks.ddd.repository.QueryTimeoutException;
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.HqlSpecification;
 import com.thoughtworks.ddd.specification.OrderComparator;
 import com.thoughtworks.ddd.specification.Specification;
 
@@ -190,6 +208,425 @@ public class HibernateRepositoryTest {
         order.verify(mockCriteria).uniqueResult();
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deleteSatisfyingShouldIssueSingleBulkDeleteForHqlSpecification() throws Exception {
+        final HqlSpecification<MyEntity> specification = mock(HqlSpecification.class);
+        when(specification.getHqlRestriction()).thenReturn("status = :status");
+        when(specification.getHqlParameters()).thenReturn(Collections.<String, Object>singletonMap("status", "OPEN"));
+        final Query mockQuery = mock(Query.class);
+        when(mockSession.createQuery(anyString())).thenReturn(mockQuery);
+        when(mockQuery.executeUpdate()).thenReturn(42);
+
+        assertEquals(42, repository.deleteSatisfying(specification));
+
+        verify(mockSession).createQuery("delete from " + MyEntity.class.getName() + " where status = :status");
+        verify(mockQuery).setParameter("status", "OPEN");
+        verify(mockQuery).executeUpdate();
+        verify(mockSession, never()).createCriteria(any(Class.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deleteSatisfyingShouldSelectIdentifiersForHqlSpecificationWithoutRestriction() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        final ClassMetadata mockMetadata = mock(ClassMetadata.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        when(mockFactory.getClassMetadata(MyEntity.class)).thenReturn(mockMetadata);
+        when(mockMetadata.getIdentifierPropertyName()).thenReturn("id");
+        repository = new HibernateRepository<MyEntity>(mockFactory) { };
+        final HqlSpecification<MyEntity> specification = mock(HqlSpecification.class);
+        when(mockCriteria.list()).thenReturn(Collections.emptyList());
+
+        assertEquals(0, repository.deleteSatisfying(specification));
+
+        verify(specification).populateCriteria(same(mockCriteria));
+        verify(specification, never()).getHqlParameters();
+        verify(mockSession, never()).createQuery(anyString());
+    }
+
+    @Test
+    public void deleteSatisfyingShouldDeleteSelectedIdentifiersInChunksForCriteriaSpecification() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        final ClassMetadata mockMetadata = mock(ClassMetadata.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        when(mockFactory.getClassMetadata(MyEntity.class)).thenReturn(mockMetadata);
+        when(mockMetadata.getIdentifierPropertyName()).thenReturn("number");
+        repository = new HibernateRepository<MyEntity>(mockFactory) {
+            @Override
+            protected int getBulkChunkSize() {
+                return 2;
+            }
+        };
+        when(mockCriteria.list()).thenReturn(Arrays.asList(1L, 2L), Arrays.asList(3L));
+        final Query mockQuery = mock(Query.class);
+        when(mockSession.createQuery(anyString())).thenReturn(mockQuery);
+        when(mockQuery.executeUpdate()).thenReturn(2, 1);
+
+        assertEquals(3, repository.deleteSatisfying(mockSpecification));
+
+        final InOrder order = inOrder(mockSpecification, mockCriteria, mockQuery);
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).setProjection(isA(IdentifierProjection.class));
+        order.verify(mockCriteria).setMaxResults(2);
+        order.verify(mockCriteria).list();
+        order.verify(mockQuery).setParameterList("ids", Arrays.asList(1L, 2L));
+        order.verify(mockQuery).executeUpdate();
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).add(isA(Criterion.class));
+        order.verify(mockCriteria).list();
+        order.verify(mockQuery).setParameterList("ids", Arrays.asList(3L));
+        order.verify(mockQuery).executeUpdate();
+        verify(mockCriteria, times(2)).list();
+        verify(mockSession, times(2)).createQuery(
+                "delete from " + MyEntity.class.getName() + " where number in (:ids)");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void updateSatisfyingShouldUpdateSelectedIdentifiersInChunksForCriteriaSpecification() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        final ClassMetadata mockMetadata = mock(ClassMetadata.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        when(mockFactory.getClassMetadata(MyEntity.class)).thenReturn(mockMetadata);
+        when(mockMetadata.getIdentifierPropertyName()).thenReturn("number");
+        repository = new HibernateRepository<MyEntity>(mockFactory) {
+            @Override
+            protected int getBulkChunkSize() {
+                return 2;
+            }
+        };
+        when(mockCriteria.list()).thenReturn(Arrays.asList(1L, 2L), Arrays.asList(3L, 4L), Collections.emptyList());
+        final Assignments<MyEntity> assignments = mock(Assignments.class);
+        when(assignments.getPropertyValues()).thenReturn(Collections.<String, Object>singletonMap("status", "CLOSED"));
+        final Query mockQuery = mock(Query.class);
+        when(mockSession.createQuery(anyString())).thenReturn(mockQuery);
+        when(mockQuery.executeUpdate()).thenReturn(2, 2);
+
+        assertEquals(4, repository.updateSatisfying(mockSpecification, assignments));
+
+        final InOrder order = inOrder(mockQuery);
+        order.verify(mockQuery).setParameterList("ids", Arrays.asList(1L, 2L));
+        order.verify(mockQuery).setParameter("assigned_status", "CLOSED");
+        order.verify(mockQuery).executeUpdate();
+        order.verify(mockQuery).setParameterList("ids", Arrays.asList(3L, 4L));
+        order.verify(mockQuery).setParameter("assigned_status", "CLOSED");
+        order.verify(mockQuery).executeUpdate();
+        verify(mockCriteria, times(3)).list();
+        verify(mockCriteria, times(2)).add(isA(Criterion.class));
+        verify(mockSession, times(2)).createQuery("update " + MyEntity.class.getName()
+                + " set status = :assigned_status where number in (:ids)");
+        verify(assignments, never()).applyTo(any(MyEntity.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void updateSatisfyingShouldIssueSingleBulkUpdateForHqlSpecification() throws Exception {
+        final HqlSpecification<MyEntity> specification = mock(HqlSpecification.class);
+        when(specification.getHqlRestriction()).thenReturn("status = :status");
+        when(specification.getHqlParameters()).thenReturn(Collections.<String, Object>singletonMap("status", "OPEN"));
+        final Map<String, Object> propertyValues = new LinkedHashMap<String, Object>();
+        propertyValues.put("status", "CLOSED");
+        propertyValues.put("address.city", "Chicago");
+        final Assignments<MyEntity> assignments = mock(Assignments.class);
+        when(assignments.getPropertyValues()).thenReturn(propertyValues);
+        final Query mockQuery = mock(Query.class);
+        when(mockSession.createQuery(anyString())).thenReturn(mockQuery);
+        when(mockQuery.executeUpdate()).thenReturn(7);
+
+        assertEquals(7, repository.updateSatisfying(specification, assignments));
+
+        verify(mockSession).createQuery("update " + MyEntity.class.getName()
+                + " set status = :assigned_status, address.city = :assigned_address_city where status = :status");
+        verify(mockQuery).setParameter("status", "OPEN");
+        verify(mockQuery).setParameter("assigned_status", "CLOSED");
+        verify(mockQuery).setParameter("assigned_address_city", "Chicago");
+        verify(assignments, never()).applyTo(any(MyEntity.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(expected = IllegalArgumentException.class)
+    public void updateSatisfyingShouldRejectInvalidPropertyNames() throws Exception {
+        final Assignments<MyEntity> assignments = mock(Assignments.class);
+        when(assignments.getPropertyValues()).thenReturn(
+                Collections.<String, Object>singletonMap("status = 'x', name", "y"));
+        repository.updateSatisfying(mockSpecification, assignments);
+    }
+
+    @Test
+    public void shouldNotCacheQueriesByDefault() throws Exception {
+        repository.selectSatisfying(mockSpecification);
+        verify(mockCriteria, never()).setCacheable(anyBoolean());
+        verify(mockCriteria, never()).setCacheRegion(anyString());
+    }
+
+    @Test
+    public void shouldCacheSelectionsAndCountsInRepositoryQueryCacheRegion() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        repository = new HibernateRepository<MyEntity>(mockFactory, "myEntities") { };
+        when(mockCriteria.list()).thenReturn(Collections.singletonList(1));
+
+        repository.selectSatisfying(mockSpecification);
+        repository.selectUnique(mockSpecification);
+        repository.countSatisfying(mockSpecification);
+
+        verify(mockCriteria, times(3)).setCacheable(true);
+        verify(mockCriteria, times(3)).setCacheRegion("myEntities");
+    }
+
+    @Test
+    public void shouldNotCacheIdentifiersSelectedForBulkOperations() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        final ClassMetadata mockMetadata = mock(ClassMetadata.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        when(mockFactory.getClassMetadata(MyEntity.class)).thenReturn(mockMetadata);
+        when(mockMetadata.getIdentifierPropertyName()).thenReturn("id");
+        repository = new HibernateRepository<MyEntity>(mockFactory, "myEntities") { };
+        when(mockCriteria.list()).thenReturn(Collections.emptyList());
+
+        repository.deleteSatisfying(mockSpecification);
+
+        verify(mockCriteria, never()).setCacheable(anyBoolean());
+    }
+
+    @Test
+    public void shouldCacheIndividualSelectionsUsingCacheableSpecification() throws Exception {
+        repository.selectSatisfying(new CacheableSpecification<MyEntity>(mockSpecification, "hotLookups"));
+
+        final InOrder order = inOrder(mockSpecification, mockCriteria);
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).setCacheable(true);
+        order.verify(mockCriteria).setCacheRegion("hotLookups");
+        order.verify(mockCriteria).list();
+    }
+
+    @Test
+    public void selectSatisfyingWithFetchPlanShouldJoinFetchInSingleStatement() throws Exception {
+        final MyEntity expectedObject = new MyEntity();
+        when(mockCriteria.list()).thenReturn(Arrays.asList(expectedObject, expectedObject));
+
+        final Set<MyEntity> result = repository.selectSatisfyingWith(mockSpecification,
+                new QueryOptions<MyEntity>().fetch(new FetchPlan().join("lines")));
+        assertEquals(Collections.singleton(expectedObject), result);
+
+        final InOrder order = inOrder(mockSpecification, mockCriteria);
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).setFetchMode("lines", FetchMode.JOIN);
+        order.verify(mockCriteria).setResultTransformer(same(Criteria.DISTINCT_ROOT_ENTITY));
+        order.verify(mockCriteria).list();
+        verify(mockSession, times(1)).createCriteria(MyEntity.class);
+    }
+
+    @Test
+    public void selectSatisfyingWithFetchPlanShouldBatchFetchInOneStatementPerBatch() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        final ClassMetadata mockMetadata = mock(ClassMetadata.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        when(mockFactory.getClassMetadata(MyEntity.class)).thenReturn(mockMetadata);
+        when(mockMetadata.getIdentifierPropertyName()).thenReturn("id");
+        repository = new HibernateRepository<MyEntity>(mockFactory) { };
+        final List<MyEntity> roots = new ArrayList<MyEntity>();
+        for (long id = 0; id < 25; id++) {
+            final MyEntity root = new MyEntity();
+            roots.add(root);
+            when(mockSession.getIdentifier(same(root))).thenReturn(id);
+        }
+        when(mockCriteria.list()).thenReturn(roots);
+
+        final Set<MyEntity> result = repository.selectSatisfyingWith(mockSpecification,
+                new QueryOptions<MyEntity>().fetch(new FetchPlan().batch("lines", 10)));
+        assertEquals(new HashSet<MyEntity>(roots), result);
+
+        verify(mockSession, times(4)).createCriteria(MyEntity.class);
+        verify(mockCriteria, times(4)).list();
+        verify(mockCriteria, times(3)).add(isA(Criterion.class));
+        verify(mockCriteria, times(3)).setFetchMode("lines", FetchMode.JOIN);
+    }
+
+    @Test
+    public void selectSatisfyingWithFetchPlanShouldSubselectByReapplyingSpecification() throws Exception {
+        when(mockCriteria.list()).thenReturn(Arrays.asList(new MyEntity(), new MyEntity()));
+
+        repository.selectSatisfyingWith(mockSpecification, new QueryOptions<MyEntity>().fetch(new FetchPlan()
+                .subselect("lines")));
+
+        verify(mockSession, times(2)).createCriteria(MyEntity.class);
+        verify(mockSpecification, times(2)).populateCriteria(same(mockCriteria));
+        verify(mockCriteria).setFetchMode("lines", FetchMode.JOIN);
+        verify(mockCriteria, times(2)).list();
+    }
+
+    @Test
+    public void selectSatisfyingWithFetchPlanShouldNotCacheSubselectOfCacheableSpecification() throws Exception {
+        when(mockCriteria.list()).thenReturn(Arrays.asList(new MyEntity()));
+
+        repository.selectSatisfyingWith(new CacheableSpecification<MyEntity>(mockSpecification, "hotLookups"),
+                new QueryOptions<MyEntity>().fetch(new FetchPlan().subselect("lines")));
+
+        final InOrder order = inOrder(mockCriteria);
+        order.verify(mockCriteria).setCacheable(true);
+        order.verify(mockCriteria).list();
+        order.verify(mockCriteria).setCacheable(true);
+        order.verify(mockCriteria).setCacheable(false);
+        order.verify(mockCriteria).setFetchMode("lines", FetchMode.JOIN);
+        order.verify(mockCriteria).list();
+    }
+
+    @Test
+    public void selectSatisfyingWithFetchPlanShouldNotIssueFurtherStatementsWhenNothingMatches() throws Exception {
+        when(mockCriteria.list()).thenReturn(Collections.emptyList());
+
+        repository.selectSatisfyingWith(mockSpecification, new QueryOptions<MyEntity>().orderBy(mockComparator).fetch(
+                new FetchPlan().subselect("lines").batch("notes", 10)));
+
+        verify(mockSession, times(1)).createCriteria(MyEntity.class);
+    }
+
+    @Test
+    public void selectSatisfyingWithDeadlineShouldSetCriteriaTimeoutFromRemainingTime() throws Exception {
+        final MyEntity expectedObject = new MyEntity();
+        when(mockCriteria.list()).thenReturn(Collections.singletonList(expectedObject));
+
+        final Set<MyEntity> result = repository.selectSatisfyingWith(mockSpecification,
+                new QueryOptions<MyEntity>().within(new Deadline(90, TimeUnit.SECONDS)));
+        assertEquals(Collections.singleton(expectedObject), result);
+
+        final InOrder order = inOrder(mockSpecification, mockCriteria);
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).setTimeout(90);
+        order.verify(mockCriteria).list();
+    }
+
+    @Test
+    public void selectSatisfyingWithShouldCombineOrderingFetchPlanAndDeadline() throws Exception {
+        when(mockCriteria.list()).thenReturn(Collections.singletonList(new MyEntity()));
+
+        repository.selectSatisfyingWith(mockSpecification, new QueryOptions<MyEntity>().orderBy(mockComparator).fetch(
+                new FetchPlan().join("lines")).within(new Deadline(1, TimeUnit.MINUTES)));
+
+        final InOrder order = inOrder(mockSpecification, mockComparator, mockCriteria);
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockComparator).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).setFetchMode("lines", FetchMode.JOIN);
+        order.verify(mockCriteria).setTimeout(60);
+        order.verify(mockCriteria).list();
+    }
+
+    @Test
+    public void selectSatisfyingWithDeadlineShouldSetTimeoutOnFetchPlanFollowUpQueries() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        final ClassMetadata mockMetadata = mock(ClassMetadata.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        when(mockFactory.getClassMetadata(MyEntity.class)).thenReturn(mockMetadata);
+        when(mockMetadata.getIdentifierPropertyName()).thenReturn("id");
+        repository = new HibernateRepository<MyEntity>(mockFactory) { };
+        final MyEntity root = new MyEntity();
+        when(mockSession.getIdentifier(same(root))).thenReturn(1L);
+        when(mockCriteria.list()).thenReturn(Collections.singletonList(root));
+
+        repository.selectSatisfyingWith(mockSpecification, new QueryOptions<MyEntity>().fetch(
+                new FetchPlan().subselect("lines").batch("notes", 10)).within(new Deadline(90, TimeUnit.SECONDS)));
+
+        final InOrder order = inOrder(mockCriteria);
+        order.verify(mockCriteria).setTimeout(90);
+        order.verify(mockCriteria).list();
+        order.verify(mockCriteria).setFetchMode("lines", FetchMode.JOIN);
+        order.verify(mockCriteria).setTimeout(90);
+        order.verify(mockCriteria).list();
+        order.verify(mockCriteria).setFetchMode("notes", FetchMode.JOIN);
+        order.verify(mockCriteria).setTimeout(90);
+        order.verify(mockCriteria).list();
+    }
+
+    @Test
+    public void selectUniqueWithShouldApplyFetchPlanToMatchedObject() throws Exception {
+        final MyEntity expectedObject = new MyEntity();
+        when(mockCriteria.list()).thenReturn(Arrays.asList(expectedObject, expectedObject));
+
+        assertSame(expectedObject, repository.selectUniqueWith(mockSpecification, new QueryOptions<MyEntity>()
+                .fetch(new FetchPlan().subselect("lines"))));
+
+        verify(mockSession, times(2)).createCriteria(MyEntity.class);
+        verify(mockCriteria, never()).setTimeout(anyInt());
+    }
+
+    @Test
+    public void selectSatisfyingWithDeadlineShouldNotQueryWhenDeadlineHasPassed() throws Exception {
+        try {
+            repository.selectSatisfyingWith(mockSpecification, new QueryOptions<MyEntity>().within(new Deadline(0,
+                    TimeUnit.SECONDS)));
+            fail();
+        } catch (final QueryTimeoutException e) {
+            verify(mockCriteria, never()).list();
+        }
+    }
+
+    @Test
+    public void selectSatisfyingWithDeadlineShouldTranslateCancelledStatementToTimeout() throws Exception {
+        final JDBCException cancelled = new JDBCException("cancelled", null);
+        final Deadline deadline = new Deadline(20, TimeUnit.MILLISECONDS);
+        when(mockCriteria.list()).thenAnswer(new Answer<List<MyEntity>>() {
+            public List<MyEntity> answer(final InvocationOnMock invocation) throws Throwable {
+                while (!deadline.isExpired()) {
+                    Thread.sleep(5);
+                }
+                throw cancelled;
+            }
+        });
+
+        try {
+            repository.countSatisfyingWith(mockSpecification, new QueryOptions<MyEntity>().within(deadline));
+            fail();
+        } catch (final QueryTimeoutException e) {
+            assertSame(cancelled, e.getCause());
+        }
+    }
+
+    @Test
+    public void selectUniqueWithDeadlineShouldThrowExceptionIfMultipeResultsMatchSpecification() throws Exception {
+        when(mockCriteria.list()).thenReturn(Arrays.asList(new MyEntity(), new MyEntity()));
+        try {
+            repository.selectUniqueWith(mockSpecification, new QueryOptions<MyEntity>().within(new Deadline(1,
+                    TimeUnit.MINUTES)));
+            fail();
+        } catch (final NonUniqueObjectSelectedException e) {
+        }
+    }
+
+    @Test
+    public void shouldRejectQueryWhenLimiterIsSaturated() throws Exception {
+        final SessionFactory mockFactory = mock(SessionFactory.class);
+        when(mockFactory.getCurrentSession()).thenReturn(mockSession);
+        final QueryLimiter limiter = new QueryLimiter(1, 0);
+        repository = new HibernateRepository<MyEntity>(mockFactory, null, limiter) { };
+        limiter.acquire(new Deadline(1, TimeUnit.MINUTES));
+
+        try {
+            repository.selectSatisfyingWith(mockSpecification, new QueryOptions<MyEntity>().orderBy(mockComparator)
+                    .within(new Deadline(1, TimeUnit.MINUTES)));
+            fail();
+        } catch (final QueryRejectedException e) {
+            verify(mockCriteria, never()).list();
+        }
+    }
+
+    @Test
+    public void listSatisfyingShouldReturnCriteriaResultsWithoutCopying() throws Exception {
+        final List<MyEntity> results = Arrays.asList(new MyEntity(), new MyEntity());
+        when(mockCriteria.list()).thenReturn(results);
+
+        assertSame(results, repository.listSatisfying(mockSpecification));
+        assertSame(results, repository.listSatisfying(mockSpecification, mockComparator));
+
+        final InOrder order = inOrder(mockSpecification, mockComparator, mockCriteria);
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).list();
+        order.verify(mockSpecification).populateCriteria(same(mockCriteria));
+        order.verify(mockComparator).populateCriteria(same(mockCriteria));
+        order.verify(mockCriteria).list();
+    }
+
     private static final class MyEntity {
     }
 
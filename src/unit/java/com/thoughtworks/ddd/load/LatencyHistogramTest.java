@@ -0,0 +1,93 @@
+package com.thoughtworks.ddd.load;
+
+import static junit.framework.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldRecordSmallValuesExactly() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 256; value++) {
+            histogram.record(value);
+        }
+        assertEquals(256, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(127, histogram.getValueAtPercentile(50));
+        assertEquals(255, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void shouldReportPercentilesWithinOnePercentWithoutUnderstating() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000000; value++) {
+            histogram.record(value);
+        }
+        assertWithinOnePercentAbove(500000, histogram.getValueAtPercentile(50));
+        assertWithinOnePercentAbove(990000, histogram.getValueAtPercentile(99));
+        assertWithinOnePercentAbove(999000, histogram.getValueAtPercentile(99.9));
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+        assertEquals(1000000, histogram.getMaxValue());
+        assertEquals(500000.5, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void shouldKeepBucketBoundariesApart() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(255);
+        histogram.record(256);
+        histogram.record(257);
+        histogram.record(258);
+        assertEquals(255, histogram.getValueAtPercentile(25));
+        assertEquals(257, histogram.getValueAtPercentile(50));
+        assertEquals(257, histogram.getValueAtPercentile(75));
+        assertEquals(258, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void shouldNotReportMoreThanMaximumRecordedValue() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000001);
+        assertEquals(1000001, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void shouldClampValuesOutsideTrackableRange() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(1L << 42, histogram.getMaxValue());
+        assertEquals(1L << 42, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void shouldMergeHistogramsRecordedSeparately() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            first.record(value);
+            second.record(value + 100);
+        }
+        first.add(second);
+        assertEquals(200, first.getTotalCount());
+        assertEquals(200, first.getMaxValue());
+        assertEquals(100, first.getValueAtPercentile(50));
+        assertEquals(100.5, first.getMean(), 0.001);
+    }
+
+    @Test
+    public void shouldReportZeroWhenEmpty() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    private static void assertWithinOnePercentAbove(final long expected, final long actual) {
+        assertTrue("expected at least " + expected + " but was " + actual, actual >= expected);
+        assertTrue("expected within 1% of " + expected + " but was " + actual, actual <= expected * 1.01);
+    }
+
+}
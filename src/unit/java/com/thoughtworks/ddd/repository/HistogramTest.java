@@ -0,0 +1,63 @@
+package com.thoughtworks.ddd.repository;
+
+import static junit.framework.Assert.*;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void shouldEstimateUniformlyDistributedRanges() {
+        final Histogram histogram = new Histogram();
+        for (int value = 0; value < 1000; value++) {
+            histogram.add(value);
+        }
+        assertEquals(0.5, histogram.fractionBetween(500.0, null), 0.02);
+        assertEquals(0.1, histogram.fractionBetween(100.0, 200.0), 0.02);
+        assertEquals(1.0, histogram.fractionBetween(null, 5000.0), 0.001);
+        assertEquals(0.0, histogram.fractionBetween(2000.0, null), 0.001);
+    }
+
+    @Test
+    public void shouldGrowInBothDirections() {
+        final Histogram histogram = new Histogram();
+        histogram.add(10);
+        histogram.add(11);
+        histogram.add(-1000);
+        histogram.add(1000);
+        assertEquals(4, histogram.getTotal());
+        assertEquals(1.0, histogram.fractionBetween(null, null), 0.001);
+        assertEquals(0.25, histogram.fractionBetween(-2000.0, -500.0), 0.001);
+        assertEquals(0.25, histogram.fractionBetween(500.0, 2000.0), 0.001);
+    }
+
+    @Test
+    public void shouldHandleSingleDistinctValue() {
+        final Histogram histogram = new Histogram();
+        histogram.add(7);
+        histogram.add(7);
+        assertEquals(1.0, histogram.fractionBetween(5.0, 10.0), 0.001);
+        assertEquals(0.0, histogram.fractionBetween(8.0, null), 0.001);
+    }
+
+    @Test
+    public void shouldForgetRemovedValues() {
+        final Histogram histogram = new Histogram();
+        for (int value = 0; value < 100; value++) {
+            histogram.add(value);
+        }
+        for (int value = 50; value < 100; value++) {
+            histogram.remove(value);
+        }
+        assertEquals(50, histogram.getTotal());
+        assertEquals(0.0, histogram.fractionBetween(60.0, null), 0.05);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInfiniteValues() {
+        final Histogram histogram = new Histogram();
+        histogram.add(1);
+        histogram.add(Double.POSITIVE_INFINITY);
+    }
+
+}
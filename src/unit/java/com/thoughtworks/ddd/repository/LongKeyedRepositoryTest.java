@@ -0,0 +1,157 @@
+package com.thoughtworks.ddd.repository;
+
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.hibernate.Criteria;
+import org.junit.Test;
+
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.MatchAllSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+public class LongKeyedRepositoryTest {
+    private static final LongIdentifier<MyEntity> BY_ID = new LongIdentifier<MyEntity>() {
+        public long idOf(final MyEntity entity) {
+            return entity.id;
+        }
+    };
+
+    @Test
+    public void shouldGetEntityById() {
+        final MyEntity entity = new MyEntity(12L);
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID, Arrays.asList(
+                new MyEntity(11L), entity));
+        assertSame(entity, repository.get(12L));
+        assertNull(repository.get(13L));
+    }
+
+    @Test
+    public void shouldReplaceEntityWithSameId() {
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID);
+        final MyEntity replacement = new MyEntity(5L);
+        repository.add(new MyEntity(5L));
+        repository.add(replacement);
+        assertEquals(1, repository.size());
+        assertSame(replacement, repository.get(5L));
+        assertEquals(Collections.singleton(replacement), repository.selectAll());
+    }
+
+    @Test
+    public void shouldSelectSatisfyingInComparatorOrder() {
+        final MyEntity entity1 = new MyEntity(1L);
+        final MyEntity entity2 = new MyEntity(2L);
+        final MyEntity entity3 = new MyEntity(3L);
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID, Arrays.asList(
+                entity2, entity3, entity1));
+        final Comparator<MyEntity> descending = new Comparator<MyEntity>() {
+            public int compare(final MyEntity e1, final MyEntity e2) {
+                return e1.id < e2.id ? 1 : e1.id == e2.id ? 0 : -1;
+            }
+        };
+        assertEquals(Arrays.asList(entity3, entity1), new ArrayList<MyEntity>(repository.selectSatisfying(
+                new OddSpecification(), descending)));
+    }
+
+    @Test
+    public void shouldSelectUniqueSatisfyingEntity() throws Exception {
+        final MyEntity entity = new MyEntity(3L);
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID, Arrays.asList(
+                new MyEntity(2L), entity));
+        assertSame(entity, repository.selectUnique(new OddSpecification()));
+    }
+
+    @Test(expected = NonUniqueObjectSelectedException.class)
+    public void shouldFailWhenNonUniqueResultDuringSelectUnique() throws Exception {
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID, Arrays.asList(
+                new MyEntity(1L), new MyEntity(2L)));
+        repository.selectUnique(new MatchAllSpecification<MyEntity>());
+    }
+
+    @Test
+    public void shouldDeleteSatisfyingEntities() {
+        final MyEntity entity = new MyEntity(2L);
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID, Arrays.asList(
+                new MyEntity(1L), entity, new MyEntity(3L)));
+        assertEquals(2, repository.deleteSatisfying(new OddSpecification()));
+        assertEquals(Collections.singleton(entity), repository.selectAll());
+    }
+
+    @Test
+    public void shouldRekeyEntitiesWhoseIdsAreSwappedByUpdate() {
+        final MyEntity entity1 = new MyEntity(1L);
+        final MyEntity entity2 = new MyEntity(2L);
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID, Arrays.asList(
+                entity1, entity2));
+        final Assignments<MyEntity> swap = new Assignments<MyEntity>() {
+            public void applyTo(final MyEntity object) {
+                object.id = 3L - object.id;
+            }
+
+            public Map<String, Object> getPropertyValues() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        assertEquals(2, repository.updateSatisfying(new MatchAllSpecification<MyEntity>(), swap));
+        assertSame(entity1, repository.get(2L));
+        assertSame(entity2, repository.get(1L));
+        assertEquals(new HashSet<MyEntity>(Arrays.asList(entity1, entity2)), repository.selectAll());
+    }
+
+    @Test
+    public void shouldIterateSatisfyingEntities() {
+        final MyEntity entity = new MyEntity(3L);
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID, Arrays.asList(
+                new MyEntity(2L), entity));
+        final Collection<MyEntity> iterated = new ArrayList<MyEntity>();
+        for (final MyEntity satisfying : repository.iterateSatisfying(new OddSpecification())) {
+            iterated.add(satisfying);
+        }
+        assertEquals(Arrays.asList(entity), iterated);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailFastWhenModifiedDuringIteration() {
+        final LongKeyedRepository<MyEntity> repository = new LongKeyedRepository<MyEntity>(BY_ID);
+        for (long id = 1; id <= 12; id++) {
+            repository.add(new MyEntity(id));
+        }
+        long nextId = 100;
+        for (final MyEntity satisfying : repository.iterateSatisfying(new MatchAllSpecification<MyEntity>())) {
+            repository.add(new MyEntity(nextId++));
+        }
+    }
+
+    @Test(expected = NullObjectAddedException.class)
+    public void shouldNotAddEntityWhenEntityIsNull() {
+        new LongKeyedRepository<MyEntity>(BY_ID).add((MyEntity) null);
+    }
+
+    private static final class OddSpecification implements Specification<MyEntity> {
+        public boolean isSatisfiedBy(final MyEntity object) {
+            return object.id % 2 == 1;
+        }
+
+        public void populateCriteria(final Criteria criteria) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class MyEntity {
+        private long id;
+
+        private MyEntity(final long id) {
+            this.id = id;
+        }
+    }
+
+}
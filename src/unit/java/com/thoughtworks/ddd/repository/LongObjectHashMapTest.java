@@ -0,0 +1,119 @@
+package com.thoughtworks.ddd.repository;
+
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void shouldReplaceValueForExistingKey() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        assertNull(map.put(7L, "a"));
+        assertEquals("a", map.put(7L, "b"));
+        assertEquals("b", map.get(7L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void shouldHoldZeroKey() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        map.put(0L, "zero");
+        map.put(1L, "one");
+        assertEquals("zero", map.get(0L));
+        assertEquals(2, map.size());
+        assertEquals(2, values(map).size());
+        assertEquals("zero", map.remove(0L));
+        assertNull(map.get(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void shouldBehaveLikeHashMapUnderRandomOperations() {
+        final Random random = new Random(42);
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<Long>();
+        final Map<Long, Long> reference = new HashMap<Long, Long>();
+        for (int i = 0; i < 100000; i++) {
+            final long key = random.nextInt(2000) - 1000L;
+            final int operation = random.nextInt(3);
+            if (operation == 0) {
+                assertEquals(reference.put(key, key), map.put(key, key));
+            } else if (operation == 1) {
+                assertEquals(reference.remove(key), map.remove(key));
+            } else {
+                assertEquals(reference.get(key), map.get(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        final List<Long> values = values(map);
+        assertEquals(reference.size(), values.size());
+        assertTrue(values.containsAll(reference.values()));
+    }
+
+    @Test
+    public void shouldFindAllKeysAfterGrowing() {
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<Long>();
+        for (long key = 1; key <= 10000; key++) {
+            map.put(key << 32, key);
+        }
+        for (long key = 1; key <= 10000; key++) {
+            assertEquals(Long.valueOf(key), map.get(key << 32));
+        }
+    }
+
+    @Test
+    public void valueIteratorShouldFailFastWhenKeyIsAddedOrRemoved() {
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<Long>();
+        for (long key = 0; key < 10; key++) {
+            map.put(key, key);
+        }
+        final Iterator<Long> added = map.valueIterator();
+        added.next();
+        map.put(100L, 100L);
+        try {
+            added.next();
+            fail();
+        } catch (final ConcurrentModificationException e) {
+        }
+
+        final Iterator<Long> removed = map.valueIterator();
+        removed.next();
+        map.remove(0L);
+        try {
+            removed.hasNext();
+            fail();
+        } catch (final ConcurrentModificationException e) {
+        }
+    }
+
+    @Test
+    public void valueIteratorShouldTolerateReplacingValueOfExistingKey() {
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<Long>();
+        map.put(1L, 1L);
+        map.put(2L, 2L);
+        final Iterator<Long> iterator = map.valueIterator();
+        iterator.next();
+        map.put(1L, 10L);
+        map.put(2L, 20L);
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        assertFalse(iterator.hasNext());
+    }
+
+    private static <V> List<V> values(final LongObjectHashMap<V> map) {
+        final List<V> values = new ArrayList<V>();
+        for (final Iterator<V> iterator = map.valueIterator(); iterator.hasNext();) {
+            values.add(iterator.next());
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.thoughtworks.ddd.repository;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.MatchAllSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+@SuppressWarnings("unchecked")
+public class MaterializedViewTest {
+    private static final Comparator<MyEntity> BY_VALUE = new Comparator<MyEntity>() {
+        public int compare(final MyEntity e1, final MyEntity e2) {
+            return e1.value - e2.value;
+        }
+    };
+
+    private SetBasedRepository<MyEntity> repository;
+    private Specification<MyEntity> evenSpecification;
+
+    @Before
+    public void setup() {
+        repository = new SetBasedRepository<MyEntity>();
+        evenSpecification = new Specification<MyEntity>() {
+            public boolean isSatisfiedBy(final MyEntity object) {
+                return object.value % 2 == 0;
+            }
+
+            public void populateCriteria(final Criteria criteria) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Test
+    public void shouldContainExistingEntitiesSatisfyingSpecificationWhenCreated() {
+        final MyEntity entity1 = new MyEntity(1);
+        final MyEntity entity2 = new MyEntity(2);
+        repository.add(Arrays.asList(entity1, entity2));
+
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification);
+        assertEquals(Collections.singleton(entity2), view.getResults());
+        assertEquals(1, view.size());
+    }
+
+    @Test
+    public void shouldIncludeSatisfyingEntitiesAddedAfterCreation() {
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification);
+        final MyEntity entity1 = new MyEntity(1);
+        final MyEntity entity2 = new MyEntity(2);
+        final MyEntity entity4 = new MyEntity(4);
+
+        repository.add(entity1);
+        repository.add(entity2);
+        repository.add(Arrays.asList(entity4));
+
+        assertEquals(new HashSet<MyEntity>(Arrays.asList(entity2, entity4)), view.getResults());
+    }
+
+    @Test
+    public void shouldKeepResultsOrderedByComparator() {
+        repository.add(Arrays.asList(new MyEntity(6), new MyEntity(2)));
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification, BY_VALUE);
+
+        repository.add(new MyEntity(4));
+        repository.add(Arrays.asList(new MyEntity(8), new MyEntity(0), new MyEntity(3)));
+
+        final Collection<Integer> values = new ArrayList<Integer>();
+        for (final MyEntity entity : view.getResults()) {
+            values.add(entity.value);
+        }
+        assertEquals(Arrays.asList(0, 2, 4, 6, 8), values);
+    }
+
+    @Test
+    public void shouldNotifyListenersOfAddedEntitiesOnly() {
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification);
+        final MaterializedViewListener<MyEntity> listener = mock(MaterializedViewListener.class);
+        view.addListener(listener);
+        final MyEntity entity2 = new MyEntity(2);
+        final MyEntity entity4 = new MyEntity(4);
+
+        repository.add(Arrays.asList(new MyEntity(1), entity2, entity4));
+
+        verify(listener).entitiesAdded(same(view), eq(Arrays.asList(entity2, entity4)));
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void shouldNotNotifyListenersWhenEntityAlreadyPresent() {
+        final MyEntity entity = new MyEntity(2);
+        repository.add(entity);
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification);
+        final MaterializedViewListener<MyEntity> listener = mock(MaterializedViewListener.class);
+        view.addListener(listener);
+
+        repository.add(entity);
+        repository.add(Collections.singleton(entity));
+
+        verifyZeroInteractions(listener);
+    }
+
+    @Test
+    public void shouldRemoveDeletedEntitiesAndNotifyListeners() {
+        final MyEntity entity2 = new MyEntity(2);
+        final MyEntity entity4 = new MyEntity(4);
+        repository.add(Arrays.asList(entity2, entity4));
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification, BY_VALUE);
+        final MaterializedViewListener<MyEntity> listener = mock(MaterializedViewListener.class);
+        view.addListener(listener);
+
+        repository.deleteSatisfying(new ValueSpecification(2));
+
+        assertEquals(Collections.singleton(entity4), view.getResults());
+        assertEquals(Arrays.asList(entity4), new ArrayList<MyEntity>(view.getResults()));
+        verify(listener).entitiesRemoved(same(view), eq(Collections.singleton(entity2)));
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void shouldMoveUpdatedEntitiesInAndOutOfView() {
+        final MyEntity entity1 = new MyEntity(1);
+        final MyEntity entity2 = new MyEntity(2);
+        repository.add(Arrays.asList(entity1, entity2));
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification);
+        final Assignments<MyEntity> increment = new Assignments<MyEntity>() {
+            public void applyTo(final MyEntity object) {
+                object.value++;
+            }
+
+            public Map<String, Object> getPropertyValues() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        assertEquals(2, repository.updateSatisfying(new MatchAllSpecification<MyEntity>(), increment));
+
+        assertEquals(Collections.singleton(entity1), view.getResults());
+    }
+
+    @Test
+    public void shouldNotifyListenersOfNetChangeOnlyWhenEntitiesUpdated() {
+        final MyEntity entity1 = new MyEntity(1);
+        final MyEntity entity2 = new MyEntity(2);
+        final MyEntity entity4 = new MyEntity(4);
+        repository.add(Arrays.asList(entity1, entity2, entity4));
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification, BY_VALUE);
+        final MaterializedViewListener<MyEntity> listener = mock(MaterializedViewListener.class);
+        view.addListener(listener);
+        final Assignments<MyEntity> negate = new Assignments<MyEntity>() {
+            public void applyTo(final MyEntity object) {
+                object.value = object.value == 1 ? 6 : -object.value;
+            }
+
+            public Map<String, Object> getPropertyValues() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        assertEquals(3, repository.updateSatisfying(new MatchAllSpecification<MyEntity>(), negate));
+
+        assertEquals(Arrays.asList(entity4, entity2, entity1), new ArrayList<MyEntity>(view.getResults()));
+        verify(listener).entitiesAdded(same(view), eq(Collections.singletonList(entity1)));
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void shouldStopMaintainingViewOnceDropped() {
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification);
+        final MaterializedViewListener<MyEntity> listener = mock(MaterializedViewListener.class);
+        view.addListener(listener);
+        repository.dropView(view);
+
+        repository.add(new MyEntity(2));
+
+        assertTrue(view.getResults().isEmpty());
+        verifyZeroInteractions(listener);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowResultsToBeModified() {
+        final MaterializedView<MyEntity> view = repository.createView(evenSpecification, BY_VALUE);
+        final Set<MyEntity> results = view.getResults();
+        results.add(new MyEntity(2));
+    }
+
+    private static final class ValueSpecification implements Specification<MyEntity> {
+        private final int value;
+
+        private ValueSpecification(final int value) {
+            this.value = value;
+        }
+
+        public boolean isSatisfiedBy(final MyEntity object) {
+            return object.value == value;
+        }
+
+        public void populateCriteria(final Criteria criteria) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class MyEntity {
+        private int value;
+
+        private MyEntity(final int value) {
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.thoughtworks.ddd.repository;
+
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.hibernate.Criteria;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thoughtworks.ddd.specification.AndSpecification;
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.MatchAllSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+@SuppressWarnings("unchecked")
+public class PartitionedRepositoryTest {
+    private static final PartitionKey<MyEntity, String> BY_CUSTOMER = new PartitionKey<MyEntity, String>() {
+        public String keyOf(final MyEntity entity) {
+            return entity.customer;
+        }
+    };
+
+    private static final Comparator<MyEntity> BY_AMOUNT = new Comparator<MyEntity>() {
+        public int compare(final MyEntity e1, final MyEntity e2) {
+            return e1.amount - e2.amount;
+        }
+    };
+
+    private ExecutorService executor;
+    private PartitionedRepository<MyEntity, String> repository;
+    private List<MyEntity> entities;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+        repository = new PartitionedRepository<MyEntity, String>(4, BY_CUSTOMER, executor);
+        entities = new ArrayList<MyEntity>();
+        for (int i = 0; i < 40; i++) {
+            entities.add(new MyEntity("customer" + (i % 7), (i * 37) % 41));
+        }
+        repository.add(entities);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldSelectAllEntitiesAcrossPartitions() {
+        assertEquals(new HashSet<MyEntity>(entities), repository.selectAll());
+    }
+
+    @Test
+    public void shouldMergePartitionResultsInComparatorOrder() {
+        final List<MyEntity> expected = new ArrayList<MyEntity>();
+        for (final MyEntity entity : entities) {
+            if (entity.amount > 10) {
+                expected.add(entity);
+            }
+        }
+        Collections.sort(expected, BY_AMOUNT);
+
+        final Set<MyEntity> result = repository.selectSatisfying(new MinimumAmountSpecification(11), BY_AMOUNT);
+        assertEquals(expected, new ArrayList<MyEntity>(result));
+    }
+
+    @Test
+    public void shouldSelectFromPinnedPartitionOnly() {
+        final CustomerSpecification specification = new CustomerSpecification("customer3");
+        final Set<MyEntity> result = repository.selectSatisfying(new AndSpecification<MyEntity>(
+                new MinimumAmountSpecification(0), specification));
+
+        assertEquals(expectedForCustomer("customer3"), result);
+        assertTrue(specification.evaluations < entities.size());
+    }
+
+    @Test
+    public void shouldSelectUniqueAcrossPartitions() throws Exception {
+        final MyEntity unique = new MyEntity("customer99", 1000);
+        repository.add(unique);
+        assertSame(unique, repository.selectUnique(new MinimumAmountSpecification(1000)));
+        assertNull(repository.selectUnique(new MinimumAmountSpecification(2000)));
+    }
+
+    @Test(expected = NonUniqueObjectSelectedException.class)
+    public void shouldFailWhenNonUniqueResultInDifferentPartitions() throws Exception {
+        repository.selectUnique(new MatchAllSpecification<MyEntity>());
+    }
+
+    @Test
+    public void shouldDeleteFromPinnedPartition() {
+        final int expected = expectedForCustomer("customer2").size();
+        assertEquals(expected, repository.deleteSatisfying(new CustomerSpecification("customer2")));
+        assertEquals(entities.size() - expected, repository.selectAll().size());
+        assertTrue(repository.selectSatisfying(new CustomerSpecification("customer2")).isEmpty());
+    }
+
+    @Test
+    public void shouldRepartitionEntitiesWhenUpdateChangesPartitionKey() {
+        final Set<MyEntity> moved = expectedForCustomer("customer1");
+        final int updated = repository.updateSatisfying(new CustomerSpecification("customer1"),
+                new Assignments<MyEntity>() {
+                    public void applyTo(final MyEntity object) {
+                        object.customer = "customer42";
+                    }
+
+                    public Map<String, Object> getPropertyValues() {
+                        throw new UnsupportedOperationException();
+                    }
+                });
+
+        assertEquals(moved.size(), updated);
+        assertEquals(moved, repository.selectSatisfying(new CustomerSpecification("customer42")));
+        assertEquals(entities.size(), repository.selectAll().size());
+    }
+
+    @Test
+    public void shouldQueryPartitionsSequentiallyWithoutExecutor() {
+        final PartitionedRepository<MyEntity, String> sequential = new PartitionedRepository<MyEntity, String>(3,
+                BY_CUSTOMER);
+        sequential.add(entities);
+        assertEquals(new HashSet<MyEntity>(entities), sequential.selectSatisfying(
+                new MatchAllSpecification<MyEntity>()));
+    }
+
+    @Test(expected = NullObjectAddedException.class)
+    public void shouldNotAddEntityWhenEntityIsNull() {
+        repository.add((MyEntity) null);
+    }
+
+    private Set<MyEntity> expectedForCustomer(final String customer) {
+        final Set<MyEntity> expected = new HashSet<MyEntity>();
+        for (final MyEntity entity : entities) {
+            if (entity.customer.equals(customer)) {
+                expected.add(entity);
+            }
+        }
+        return expected;
+    }
+
+    private static final class CustomerSpecification implements PartitionKeySpecification<MyEntity, String> {
+        private final String customer;
+        private int evaluations;
+
+        private CustomerSpecification(final String customer) {
+            this.customer = customer;
+        }
+
+        public String getPartitionKey() {
+            return customer;
+        }
+
+        public boolean isSatisfiedBy(final MyEntity object) {
+            evaluations++;
+            return object.customer.equals(customer);
+        }
+
+        public void populateCriteria(final Criteria criteria) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class MinimumAmountSpecification implements Specification<MyEntity> {
+        private final int minimum;
+
+        private MinimumAmountSpecification(final int minimum) {
+            this.minimum = minimum;
+        }
+
+        public boolean isSatisfiedBy(final MyEntity object) {
+            return object.amount >= minimum;
+        }
+
+        public void populateCriteria(final Criteria criteria) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class MyEntity {
+        private String customer;
+        private final int amount;
+
+        private MyEntity(final String customer, final int amount) {
+            this.customer = customer;
+            this.amount = amount;
+        }
+    }
+
+}
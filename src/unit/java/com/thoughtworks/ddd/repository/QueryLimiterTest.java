@@ -0,0 +1,57 @@
+package com.thoughtworks.ddd.repository;
+
+import static junit.framework.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class QueryLimiterTest {
+
+    @Test
+    public void shouldAdmitQueriesUpToConcurrencyLimit() throws Exception {
+        final QueryLimiter limiter = new QueryLimiter(2, 0);
+        final Deadline deadline = new Deadline(1, TimeUnit.SECONDS);
+        limiter.acquire(deadline);
+        limiter.acquire(deadline);
+        limiter.release();
+        limiter.acquire(deadline);
+    }
+
+    @Test(expected = QueryRejectedException.class)
+    public void shouldRejectQueryImmediatelyWhenQueueIsSaturated() throws Exception {
+        final QueryLimiter limiter = new QueryLimiter(1, 0);
+        limiter.acquire(new Deadline(1, TimeUnit.SECONDS));
+        limiter.acquire(new Deadline(1, TimeUnit.MINUTES));
+    }
+
+    @Test(expected = QueryTimeoutException.class)
+    public void shouldTimeOutQueuedQueryWhenDeadlinePasses() throws Exception {
+        final QueryLimiter limiter = new QueryLimiter(1, 1);
+        limiter.acquire(new Deadline(1, TimeUnit.SECONDS));
+        limiter.acquire(new Deadline(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldAdmitQueuedQueryWhenPermitIsReleased() throws Exception {
+        final QueryLimiter limiter = new QueryLimiter(1, 1);
+        limiter.acquire(new Deadline(1, TimeUnit.SECONDS));
+        final CountDownLatch admitted = new CountDownLatch(1);
+        final Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                limiter.acquire(new Deadline(10, TimeUnit.SECONDS));
+                admitted.countDown();
+            }
+        };
+        waiter.start();
+        while (limiter.getQueueLength() == 0) {
+            Thread.sleep(1);
+        }
+        limiter.release();
+        assertTrue(admitted.await(10, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getQueueLength());
+    }
+
+}
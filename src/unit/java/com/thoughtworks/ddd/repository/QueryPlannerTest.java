@@ -0,0 +1,254 @@
+package com.thoughtworks.ddd.repository;
+
+import static junit.framework.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thoughtworks.ddd.specification.AndSpecification;
+import com.thoughtworks.ddd.specification.Assignments;
+import com.thoughtworks.ddd.specification.Attribute;
+import com.thoughtworks.ddd.specification.EqualsSpecification;
+import com.thoughtworks.ddd.specification.RangeSpecification;
+import com.thoughtworks.ddd.specification.Specification;
+
+@SuppressWarnings("unchecked")
+public class QueryPlannerTest {
+    private static final Attribute<Order, String> STATUS = new Attribute<Order, String>() {
+        public String getName() {
+            return "status";
+        }
+
+        public String valueOf(final Order object) {
+            return object.status;
+        }
+    };
+
+    private static final Attribute<Order, Integer> CUSTOMER = new Attribute<Order, Integer>() {
+        public String getName() {
+            return "customer";
+        }
+
+        public Integer valueOf(final Order object) {
+            return object.customer;
+        }
+    };
+
+    private static final Attribute<Order, Integer> AMOUNT = new Attribute<Order, Integer>() {
+        public String getName() {
+            return "amount";
+        }
+
+        public Integer valueOf(final Order object) {
+            return object.amount;
+        }
+    };
+
+    private static final Attribute<Order, Integer> STATUS_LENGTH = new Attribute<Order, Integer>() {
+        public String getName() {
+            return "statusLength";
+        }
+
+        public Integer valueOf(final Order object) {
+            return object.status.length();
+        }
+    };
+
+    private List<Order> orders;
+    private SetBasedRepository<Order> repository;
+
+    @Before
+    public void setup() {
+        orders = new ArrayList<Order>();
+        for (int i = 0; i < 10000; i++) {
+            orders.add(new Order(i % 10 == 0 ? "CLOSED" : "OPEN", i % 500, i % 1000));
+        }
+        repository = new SetBasedRepository<Order>(orders);
+    }
+
+    @Test
+    public void shouldFullScanWithoutIndexes() {
+        final QueryPlan<Order> plan = repository.explain(new EqualsSpecification<Order, String>(STATUS, "OPEN"));
+        assertEquals(QueryPlan.AccessPath.FULL_SCAN, plan.getAccessPath());
+        assertEquals(9000, plan.getActualRows());
+    }
+
+    @Test
+    public void shouldStartFromMostSelectiveIndex() {
+        repository.createIndex(STATUS);
+        repository.createIndex(CUSTOMER);
+
+        final QueryPlan<Order> plan = repository.explain(new AndSpecification<Order>(
+                new EqualsSpecification<Order, String>(STATUS, "OPEN"), new EqualsSpecification<Order, Integer>(
+                        CUSTOMER, 7), greaterThan(AMOUNT, 100)));
+
+        assertEquals(QueryPlan.AccessPath.INDEX_INTERSECTION, plan.getAccessPath());
+        assertEquals(Arrays.asList("customer", "status"), plan.getIndexedAttributes());
+        assertEquals(expected(new AndSpecification<Order>(new EqualsSpecification<Order, String>(STATUS, "OPEN"),
+                new EqualsSpecification<Order, Integer>(CUSTOMER, 7), greaterThan(AMOUNT, 100))).size(), plan
+                .getActualRows());
+    }
+
+    @Test
+    public void shouldIntersectIndexesWhenBothAreSelective() {
+        repository.createIndex(CUSTOMER);
+        repository.createIndex(AMOUNT);
+
+        final AndSpecification<Order> specification = new AndSpecification<Order>(
+                new EqualsSpecification<Order, Integer>(CUSTOMER, 7), new EqualsSpecification<Order, Integer>(
+                        AMOUNT, 507));
+        final QueryPlan<Order> plan = repository.explain(specification);
+
+        assertEquals(QueryPlan.AccessPath.INDEX_INTERSECTION, plan.getAccessPath());
+        assertEquals(10, plan.getActualRows());
+        assertEquals(expected(specification), repository.selectSatisfying(specification));
+    }
+
+    @Test
+    public void shouldEvaluateResidualPredicatesInDeclaredOrder() {
+        repository.add(new Order(null, 7, 1));
+        final AndSpecification<Order> specification = new AndSpecification<Order>(new StatusPresentSpecification(),
+                new EqualsSpecification<Order, Integer>(STATUS_LENGTH, 4), new EqualsSpecification<Order, Integer>(
+                        CUSTOMER, 7));
+        final Set<Order> unindexed = repository.selectSatisfying(specification);
+
+        repository.createIndex(CUSTOMER);
+
+        assertEquals(QueryPlan.AccessPath.INDEX, repository.explain(specification).getAccessPath());
+        assertEquals(20, unindexed.size());
+        assertEquals(unindexed, repository.selectSatisfying(specification));
+    }
+
+    @Test
+    public void shouldEstimateRangeSelectivityFromHistogram() {
+        repository.createIndex(AMOUNT);
+        final QueryPlan<Order> plan = repository.explain(greaterThan(AMOUNT, 899));
+        assertEquals(QueryPlan.AccessPath.FULL_SCAN, plan.getAccessPath());
+        assertEquals(1000, plan.getActualRows());
+        assertEquals(1000, plan.getEstimatedRows(), 100);
+        assertTrue(plan.toString().contains("histogram"));
+    }
+
+    @Test
+    public void shouldKeepIndexesConsistentWithAddDeleteAndUpdate() {
+        repository.createIndex(STATUS);
+        final EqualsSpecification<Order, String> closed = new EqualsSpecification<Order, String>(STATUS, "CLOSED");
+        repository.add(new Order("CLOSED", 1, 1));
+        assertEquals(1001, repository.selectSatisfying(closed).size());
+
+        repository.deleteSatisfying(new EqualsSpecification<Order, Integer>(CUSTOMER, 0));
+        assertEquals(981, repository.selectSatisfying(closed).size());
+
+        repository.updateSatisfying(closed, new Assignments<Order>() {
+            public void applyTo(final Order object) {
+                object.status = "ARCHIVED";
+            }
+
+            public Map<String, Object> getPropertyValues() {
+                throw new UnsupportedOperationException();
+            }
+        });
+        assertTrue(repository.selectSatisfying(closed).isEmpty());
+        assertEquals(981, repository.selectSatisfying(new EqualsSpecification<Order, String>(STATUS, "ARCHIVED"))
+                .size());
+    }
+
+    @Test
+    public void explainShouldDescribePlanWithEstimatedAndActualRows() {
+        repository.createIndex(CUSTOMER);
+        final String explanation = repository.explain(new AndSpecification<Order>(
+                new EqualsSpecification<Order, Integer>(CUSTOMER, 3), new OpaqueSpecification())).toString();
+        assertTrue(explanation, explanation.startsWith("INDEX using [customer]: estimated 10.0 rows, actual 20 rows"));
+        assertTrue(explanation, explanation.contains("customer = 3: estimated 20.0 rows (index, 500 distinct values)"));
+    }
+
+    @Test(timeout = 5000)
+    public void shouldIndexValuesWithoutFiniteDoubleEquivalent() {
+        final Attribute<Number[], Number> value = new Attribute<Number[], Number>() {
+            public String getName() {
+                return "value";
+            }
+
+            public Number valueOf(final Number[] object) {
+                return object[0];
+            }
+        };
+        final Number[] infinite = { Double.POSITIVE_INFINITY };
+        final Number[] huge = { new BigDecimal("1e400") };
+        final Number[] notANumber = { Double.NaN };
+        final Number[] finite = { 1.0 };
+        final SetBasedRepository<Number[]> measurements = new SetBasedRepository<Number[]>(Arrays.asList(infinite,
+                finite));
+        measurements.createIndex(value);
+        measurements.add(huge);
+        measurements.add(notANumber);
+
+        assertEquals(Collections.singleton(infinite), measurements
+                .selectSatisfying(new EqualsSpecification<Number[], Number>(value, Double.POSITIVE_INFINITY)));
+        assertEquals(1, measurements.deleteSatisfying(new EqualsSpecification<Number[], Number>(value, huge[0])));
+        // only Doubles remain, so the same attribute can back a range
+        final Attribute<Number[], Double> doubleValue = (Attribute<Number[], Double>) (Attribute<Number[], ?>) value;
+        final QueryPlan<Number[]> plan = measurements.explain(new RangeSpecification<Number[], Double>(doubleValue,
+                0.0, true, null, false));
+        assertEquals(3, plan.getActualRows());
+        assertTrue(plan.toString(), plan.toString().contains("(default)"));
+    }
+
+    private Set<Order> expected(final Specification<Order> specification) {
+        final Set<Order> expected = new HashSet<Order>();
+        for (final Order order : orders) {
+            if (specification.isSatisfiedBy(order)) {
+                expected.add(order);
+            }
+        }
+        return expected;
+    }
+
+    private static RangeSpecification<Order, Integer> greaterThan(final Attribute<Order, Integer> attribute,
+            final int value) {
+        return new RangeSpecification<Order, Integer>(attribute, value, false, null, false);
+    }
+
+    private static final class OpaqueSpecification implements Specification<Order> {
+        public boolean isSatisfiedBy(final Order object) {
+            return true;
+        }
+
+        public void populateCriteria(final Criteria criteria) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class StatusPresentSpecification implements Specification<Order> {
+        public boolean isSatisfiedBy(final Order object) {
+            return object.status != null;
+        }
+
+        public void populateCriteria(final Criteria criteria) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Order {
+        private String status;
+        private final int customer;
+        private final int amount;
+
+        private Order(final String status, final int customer, final int amount) {
+            this.status = status;
+            this.customer = customer;
+            this.amount = amount;
+        }
+    }
+
+}
@@ -10,7 +10,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -18,6 +20,7 @@ import org.junit.Test;
 import com.thoughtworks.ddd.repository.NonUniqueObjectSelectedException;
 import com.thoughtworks.ddd.repository.NullObjectAddedException;
 import com.thoughtworks.ddd.repository.SetBasedRepository;
+import com.thoughtworks.ddd.specification.Assignments;
 import com.thoughtworks.ddd.specification.MatchAllSpecification;
 import com.thoughtworks.ddd.specification.Specification;
 
@@ -194,6 +197,101 @@ public class SetBasedRepositoryTest {
         repository.add((Collection<MyEntity>)null);
     }
 
+    @Test
+    public void shouldDeleteEntitiesSatisfyingSpecification() throws Exception {
+        final MyEntity entity1 = new MyEntity();
+        final MyEntity entity2 = new MyEntity();
+        final SetBasedRepository<MyEntity> repository = new SetBasedRepository<MyEntity>(Arrays.asList(entity1,
+                entity2));
+        when(mockSpecification.isSatisfiedBy(same(entity1))).thenReturn(true);
+
+        assertEquals(1, repository.deleteSatisfying(mockSpecification));
+        assertEquals(Collections.singleton(entity2), repository.selectAll());
+    }
+
+    @Test
+    public void shouldApplyAssignmentsToEntitiesSatisfyingSpecification() throws Exception {
+        final MyEntity entity1 = new MyEntity();
+        final MyEntity entity2 = new MyEntity();
+        final SetBasedRepository<MyEntity> repository = new SetBasedRepository<MyEntity>(Arrays.asList(entity1,
+                entity2));
+        when(mockSpecification.isSatisfiedBy(same(entity2))).thenReturn(true);
+        final Assignments<MyEntity> assignments = mock(Assignments.class);
+
+        assertEquals(1, repository.updateSatisfying(mockSpecification, assignments));
+        verify(assignments).applyTo(same(entity2));
+        verify(assignments, never()).applyTo(same(entity1));
+        assertEquals(new HashSet<MyEntity>(Arrays.asList(entity1, entity2)), repository.selectAll());
+    }
+
+    @Test
+    public void shouldSelectSatisfyingWithinDeadline() throws Exception {
+        final SetBasedRepository<MyEntity> repository = new SetBasedRepository<MyEntity>(Collections
+                .singleton(entity));
+        when(mockSpecification.isSatisfiedBy(same(entity))).thenReturn(true);
+        assertEquals(Collections.singleton(entity), repository.selectSatisfyingWith(mockSpecification, new Deadline(1,
+                TimeUnit.MINUTES)));
+    }
+
+    @Test(expected = QueryTimeoutException.class)
+    public void shouldAbandonScanWhenDeadlinePasses() throws Exception {
+        final Set<MyEntity> entities = new HashSet<MyEntity>();
+        for (int i = 0; i < 5000; i++) {
+            entities.add(new MyEntity());
+        }
+        final SetBasedRepository<MyEntity> repository = new SetBasedRepository<MyEntity>(entities);
+        final Deadline deadline = new Deadline(10, TimeUnit.MILLISECONDS);
+        final Specification<MyEntity> slowSpecification = new MatchAllSpecification<MyEntity>() {
+            @Override
+            public boolean isSatisfiedBy(final MyEntity object) {
+                while (!deadline.isExpired()) {
+                    Thread.yield();
+                }
+                return true;
+            }
+        };
+        repository.selectSatisfyingWith(slowSpecification, deadline);
+    }
+
+    @Test(expected = QueryRejectedException.class)
+    public void shouldRejectQueryWhenLimiterIsSaturated() throws Exception {
+        final QueryLimiter limiter = new QueryLimiter(1, 0);
+        final SetBasedRepository<MyEntity> repository = new SetBasedRepository<MyEntity>(Collections
+                .<MyEntity>emptySet(), limiter);
+        limiter.acquire(new Deadline(1, TimeUnit.MINUTES));
+        repository.selectUniqueWith(mockSpecification, new Deadline(1, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void shouldIterateEntitiesSatisfyingSpecificationLazily() throws Exception {
+        final MyEntity entity1 = new MyEntity();
+        final MyEntity entity2 = new MyEntity();
+        final SetBasedRepository<MyEntity> repository = new SetBasedRepository<MyEntity>(Arrays.asList(entity1,
+                entity2));
+        when(mockSpecification.isSatisfiedBy(same(entity2))).thenReturn(true);
+
+        final Iterable<MyEntity> satisfying = repository.iterateSatisfying(mockSpecification);
+        verifyZeroInteractions(mockSpecification);
+
+        final Iterator<MyEntity> iterator = satisfying.iterator();
+        assertTrue(iterator.hasNext());
+        assertSame(entity2, iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void shouldStopEvaluatingSpecificationWhenIterationStops() throws Exception {
+        final Set<MyEntity> entities = new HashSet<MyEntity>();
+        for (int i = 0; i < 10; i++) {
+            entities.add(new MyEntity());
+        }
+        final SetBasedRepository<MyEntity> repository = new SetBasedRepository<MyEntity>(entities);
+        when(mockSpecification.isSatisfiedBy(isA(MyEntity.class))).thenReturn(true);
+
+        repository.iterateSatisfying(mockSpecification).iterator().next();
+        verify(mockSpecification, times(1)).isSatisfiedBy(isA(MyEntity.class));
+    }
+
     private static final class MyEntity {
     }
 
@@ -7,8 +7,10 @@ import static org.mockito.Mockito.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.hibernate.Criteria;
@@ -173,4 +175,37 @@ public class AndSpecificationTest {
         assertFalse(compositeSpecification2.equals(compositeSpecification1));
     }
 
+    @Test
+    public void shouldConjoinHqlRestrictionsWithDistinctParameters() throws Exception {
+        final Attribute<Integer, Integer> identity = new Attribute<Integer, Integer>() {
+            public String getName() {
+                return "value";
+            }
+
+            public Integer valueOf(final Integer object) {
+                return object;
+            }
+        };
+        final AndSpecification<Integer> composite = new AndSpecification<Integer>(
+                new RangeSpecification<Integer, Integer>(identity, 1, true, null, false),
+                new EqualsSpecification<Integer, Integer>(identity, 3));
+
+        assertEquals("(value >= :value_lower_0) and (value = :value_1)", composite.getHqlRestriction());
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("value_lower_0", 1);
+        parameters.put("value_1", 3);
+        assertEquals(parameters, composite.getHqlParameters());
+    }
+
+    @Test
+    public void shouldHaveNoHqlRestrictionUnlessAllContainedSpecificationsHaveOne() throws Exception {
+        final HqlSpecification<Object> hqlSpecification = mock(HqlSpecification.class);
+        when(hqlSpecification.getHqlRestriction()).thenReturn("status = :status");
+        final Specification<Object> criteriaSpecification = mock(Specification.class);
+
+        assertNull(new AndSpecification<Object>(hqlSpecification, criteriaSpecification).getHqlRestriction());
+        assertNull(new AndSpecification<Object>(hqlSpecification, new AndSpecification<Object>(
+                criteriaSpecification)).getHqlRestriction());
+    }
+
 }
@@ -0,0 +1,61 @@
+package com.thoughtworks.ddd.specification;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Criterion;
+import org.junit.Test;
+
+public class EqualsSpecificationTest {
+    private static final Attribute<String, String> IDENTITY = new Attribute<String, String>() {
+        public String getName() {
+            return "value";
+        }
+
+        public String valueOf(final String object) {
+            return object;
+        }
+    };
+
+    @Test
+    public void isSatisfiedByShouldCompareAttributeValue() throws Exception {
+        final EqualsSpecification<String, String> specification = new EqualsSpecification<String, String>(IDENTITY,
+                "a");
+        assertTrue(specification.isSatisfiedBy("a"));
+        assertFalse(specification.isSatisfiedBy("b"));
+        assertFalse(specification.isSatisfiedBy(null));
+        assertTrue(new EqualsSpecification<String, String>(IDENTITY, null).isSatisfiedBy(null));
+    }
+
+    @Test
+    public void populateCriteriaShouldAddSingleRestriction() throws Exception {
+        final Criteria criteria = mock(Criteria.class);
+        new EqualsSpecification<String, String>(IDENTITY, "a").populateCriteria(criteria);
+        verify(criteria).add(any(Criterion.class));
+    }
+
+    @Test
+    public void shouldBeEqualForSameAttributeAndValue() throws Exception {
+        assertEquals(new EqualsSpecification<String, String>(IDENTITY, "a"), new EqualsSpecification<String, String>(
+                IDENTITY, "a"));
+        assertFalse(new EqualsSpecification<String, String>(IDENTITY, "a").equals(new EqualsSpecification<String, String>(
+                IDENTITY, "b")));
+    }
+
+    @Test
+    public void shouldExpressEqualityAsHqlRestriction() throws Exception {
+        final EqualsSpecification<String, String> specification = new EqualsSpecification<String, String>(IDENTITY,
+                "a");
+        assertEquals("value = :value", specification.getHqlRestriction());
+        assertEquals(Collections.singletonMap("value", "a"), specification.getHqlParameters());
+
+        final EqualsSpecification<String, String> isNull = new EqualsSpecification<String, String>(IDENTITY, null);
+        assertEquals("value is null", isNull.getHqlRestriction());
+        assertTrue(isNull.getHqlParameters().isEmpty());
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.thoughtworks.ddd.specification;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Criterion;
+import org.junit.Test;
+
+public class RangeSpecificationTest {
+    private static final Attribute<Integer, Integer> IDENTITY = new Attribute<Integer, Integer>() {
+        public String getName() {
+            return "value";
+        }
+
+        public Integer valueOf(final Integer object) {
+            return object;
+        }
+    };
+
+    @Test
+    public void isSatisfiedByShouldHonourInclusiveAndExclusiveBounds() throws Exception {
+        final RangeSpecification<Integer, Integer> specification = new RangeSpecification<Integer, Integer>(
+                IDENTITY, 1, true, 5, false);
+        assertFalse(specification.isSatisfiedBy(0));
+        assertTrue(specification.isSatisfiedBy(1));
+        assertTrue(specification.isSatisfiedBy(4));
+        assertFalse(specification.isSatisfiedBy(5));
+        assertFalse(specification.isSatisfiedBy(null));
+    }
+
+    @Test
+    public void isSatisfiedByShouldTreatNullBoundAsOpen() throws Exception {
+        final RangeSpecification<Integer, Integer> specification = new RangeSpecification<Integer, Integer>(
+                IDENTITY, null, false, 5, true);
+        assertTrue(specification.isSatisfiedBy(Integer.MIN_VALUE));
+        assertTrue(specification.isSatisfiedBy(5));
+        assertFalse(specification.isSatisfiedBy(6));
+    }
+
+    @Test
+    public void populateCriteriaShouldAddOneRestrictionPerBound() throws Exception {
+        final Criteria criteria = mock(Criteria.class);
+        new RangeSpecification<Integer, Integer>(IDENTITY, 1, true, 5, false).populateCriteria(criteria);
+        verify(criteria, times(2)).add(any(Criterion.class));
+
+        final Criteria openCriteria = mock(Criteria.class);
+        new RangeSpecification<Integer, Integer>(IDENTITY, 1, true, null, false).populateCriteria(openCriteria);
+        verify(openCriteria, times(1)).add(any(Criterion.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldRejectRangeWithoutBounds() throws Exception {
+        new RangeSpecification<Integer, Integer>(IDENTITY, null, false, null, false);
+    }
+
+    @Test
+    public void shouldExpressBoundsAsHqlRestriction() throws Exception {
+        final RangeSpecification<Integer, Integer> specification = new RangeSpecification<Integer, Integer>(
+                IDENTITY, 1, true, 5, false);
+        assertEquals("value >= :value_lower and value < :value_upper", specification.getHqlRestriction());
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("value_lower", 1);
+        parameters.put("value_upper", 5);
+        assertEquals(parameters, specification.getHqlParameters());
+
+        final RangeSpecification<Integer, Integer> open = new RangeSpecification<Integer, Integer>(IDENTITY, null,
+                false, 5, true);
+        assertEquals("value <= :value_upper", open.getHqlRestriction());
+        assertEquals(Collections.singletonMap("value_upper", 5), open.getHqlParameters());
+    }
+
+}